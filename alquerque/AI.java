@@ -2,32 +2,109 @@ package qirkat;
 
 import static qirkat.PieceColor.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /** A Player that computes its own moves.
+ *
+ *  An AI may remember the results of searches in a transposition table,
+ *  using them to cut searches short and to try the best move found
+ *  earlier first.  With more than one thread, the extra threads search
+ *  the same position independently to increasing depths, sharing the
+ *  table, and the main thread's search benefits from the entries they
+ *  leave there ("lazy SMP").
  *  @author Mudabbir Khan
  */
 class AI extends Player {
 
-    /** Maximum minimax search depth before going to static evaluation. */
-    private static final int MAX_DEPTH = 5;
+    /** Default minimax search depth before going to static evaluation. */
+    static final int MAX_DEPTH = 5;
     /** A position magnitude indicating a win (for white if positive, black
      *  if negative). */
     private static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
     /** A magnitude greater than a normal value. */
     private static final int INFTY = Integer.MAX_VALUE;
+    /** Version of the meaning of the scores and depths that my searches
+     *  store in transposition tables.  Change it whenever they change,
+     *  so that saved tables from before are not loaded. */
+    static final int SEARCH_VERSION = 1;
 
-    /** A new AI for GAME that will play MYCOLOR. */
+    /** Threads that run the extra searches of all AIs. */
+    private static final ExecutorService HELPERS =
+        Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "ai-helper");
+            t.setDaemon(true);
+            return t;
+        });
+
+    /** A new AI for GAME that will play MYCOLOR, using GAME's
+     *  evaluation weights and, at each move, the search depth, time
+     *  limit, threads and transposition table of GAME's context. */
     AI(Game game, PieceColor myColor) {
+        this(game, myColor, MAX_DEPTH, game.weights());
+        _useContext = true;
+    }
+
+    /** A new AI for GAME that will play MYCOLOR, searching DEPTH levels
+     *  before going to static evaluation with WEIGHTS, on one thread and
+     *  without a transposition table. */
+    AI(Game game, PieceColor myColor, int depth, Weights weights) {
         super(game, myColor);
+        _depth = depth;
+        _weights = weights;
+        _threads = 1;
     }
 
     @Override
     Move myMove() {
-        Main.startTiming();
-        Move move = findMove();
-        Main.endTiming();
+        EngineContext context = game().context();
+        if (_useContext) {
+            _depth = context.depth();
+            _moveTime = context.moveTime();
+            _threads = context.threads();
+            _table = context.table();
+        }
+        LatencyStats.Phase phase = LatencyStats.Phase.of(board());
+        if (context.timing()) {
+            LatencyStats latency = context.latency();
+            _main._genTimes = latency.get(myColor(), phase,
+                                          LatencyStats.Metric.MOVEGEN);
+            _main._evalTimes = latency.get(myColor(), phase,
+                                           LatencyStats.Metric.EVAL);
+        } else {
+            _main._genTimes = _main._evalTimes = null;
+        }
+        _main._progress = context.progress();
+        Events.SearchEvent event = new Events.SearchEvent();
+        event.begin();
+        long timer = context.startTiming();
+        long limit = _limit;
+        _limit = 0;
+        Move move = findMove(limit);
+        context.endTiming(timer, myColor(), phase);
+        context.addSearchStats(myColor(), _stats);
+        if (context.timing()) {
+            System.err.printf("[%s]%n", _stats);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.engine = "ai";
+            event.side = myColor().toString();
+            event.depth = _lastDepth;
+            event.nodes = _stats.nodes();
+            event.score = _lastScore;
+            event.move = String.valueOf(move);
+            event.commit();
+        }
+        tableStats();
 
-        if (myColor() == WHITE) {
+        if (move == null) {
+            return null;
+        } else if (myColor() == WHITE) {
             game().reportMove("White moves " + move + ".");
         } else {
             game().reportMove("Black moves " + move + ".");
@@ -35,45 +112,339 @@ class AI extends Player {
         return move;
     }
 
+    /** As for Player.requestMove, but if DEADLINE is not 0, the search
+     *  returns the best move found so far when DEADLINE arrives. */
+    @Override
+    CompletableFuture<Move> requestMove(long deadline,
+                                        CancellationToken token) {
+        _limit = deadline;
+        return super.requestMove(deadline, token);
+    }
+
+    @Override
+    void stop() {
+        _main._stopped = true;
+    }
+
+    /** End the search in progress, if any, as soon as possible, so that
+     *  myMove returns the best move found so far.  May be called from
+     *  any thread. */
+    void hurry() {
+        _main._hurried = true;
+    }
+
+    /** Report each depth completed by my searches to LISTENER (none if
+     *  null). */
+    void setListener(Listener listener) {
+        _listener = listener;
+    }
+
+    /** Receives reports of the progress of an AI's searches. */
+    interface Listener {
+        /** Called when a search has completed DEPTH, finding SCORE
+         *  (positive favors white) and BEST as the best move, after
+         *  searching NODES positions in NANOS nanoseconds. */
+        void iteration(int depth, int score, long nodes, long nanos,
+                       Move best);
+    }
+
+    @Override
+    long lastNodes() {
+        return _stats.nodes();
+    }
+
+    /** Return the statistics of my last search (of its main thread). */
+    SearchStats lastStats() {
+        return _stats;
+    }
+
+    /** Return the value my last search gave its starting position
+     *  (positive favors white). */
+    int lastScore() {
+        return _lastScore;
+    }
+
+    /** Return the depth of my last completed search. */
+    int lastDepth() {
+        return _lastDepth;
+    }
+
+    /** Limit each search to about MOVETIME milliseconds (no limit if
+     *  MOVETIME <= 0).  With a limit, I search to depths 1, 2, ... up to
+     *  my depth, and use the deepest search that finished in time. */
+    void setMoveTime(long moveTime) {
+        _moveTime = moveTime;
+    }
+
+    /** Search with THREADS threads.  Extra threads help only if I have a
+     *  transposition table. */
+    void setThreads(int threads) {
+        _threads = Math.max(1, threads);
+    }
+
+    /** Remember search results in TABLE (none if null). */
+    void setTable(TranspositionTable table) {
+        _table = table;
+    }
+
     /** Return a move for me from the current position, assuming there
-     *  is a move. */
-    private Move findMove() {
+     *  is a move, or null if stopped first.  If LIMIT is not 0, return
+     *  the best move found by System.nanoTime() LIMIT. */
+    private Move findMove(long limit) {
+        _main._stopped = false;
         Board b = new Board(board());
-        if (myColor() == WHITE) {
-            findMove(b, MAX_DEPTH, true, 1, -INFTY, INFTY);
-        } else {
-            findMove(b, MAX_DEPTH, true, -1, -INFTY, INFTY);
+        int sense = myColor() == WHITE ? 1 : -1;
+        _stats.start();
+        if (_table != null) {
+            _table.newSearch();
+        }
+        Search[] helpers = new Search[_table == null ? 0 : _threads - 1];
+        Future<?>[] running = new Future<?>[helpers.length];
+        for (int i = 0; i < helpers.length; i += 1) {
+            Search helper = helpers[i] = new Search(new SearchStats());
+            Board start = new Board(b);
+            int firstDepth = 1 + i % 2;
+            running[i] = HELPERS.submit(() -> {
+                helper.deepen(start, firstDepth, sense);
+            });
+        }
+        try {
+            Move move = _main.deepen(b, sense, limit);
+            return _main._stopped || cancelled() ? null : move;
+        } finally {
+            _main._stopped = _main._hurried = false;
+            for (Search helper : helpers) {
+                helper._stopped = true;
+            }
+            for (Future<?> helper : running) {
+                if (!helper.cancel(false)) {
+                    try {
+                        helper.get();
+                    } catch (InterruptedException excp) {
+                        Thread.currentThread().interrupt();
+                    } catch (ExecutionException excp) {
+                        /* A helper's failure does not affect my result. */
+                    }
+                }
+            }
         }
-        return _lastFoundMove;
     }
 
-    /** The move found by the last call to one of the ...FindMove methods
-     *  below. */
-    private Move _lastFoundMove;
+    /** Record an event describing my transposition table's use in the
+     *  last search, if one is wanted. */
+    private void tableStats() {
+        if (_table == null) {
+            return;
+        }
+        Events.TableEvent event = new Events.TableEvent();
+        if (event.shouldCommit()) {
+            event.entries = _table.capacity();
+            event.probes = _stats.tableProbes();
+            event.hits = _stats.tableHits();
+            event.commit();
+        }
+    }
+
+    /** Thrown to abandon a search whose time is up. */
+    private static class SearchTimeout extends RuntimeException {
+        /** A timeout without a stack trace. */
+        SearchTimeout() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** Thrown when a search runs out of time. */
+    private static final SearchTimeout TIMEOUT = new SearchTimeout();
+    /** Number of positions searched between checks of the clock. */
+    private static final int CLOCK_INTERVAL = 16;
+    /** Nanoseconds between reports of a search's progress. */
+    private static final long PROGRESS_INTERVAL = 250_000_000;
+
+    /** The state of one thread's search, with its scratch space. */
+    private class Search {
+
+        /** A search recording its statistics in STATS. */
+        Search(SearchStats stats) {
+            _sstats = stats;
+        }
+
+        /** Return a move from BOARD for the side with the given SENSE,
+         *  searching to my depth, or iteratively deepening until my time
+         *  runs out if I have a time limit.  If LIMIT is not 0, also
+         *  deepen iteratively, and stop by System.nanoTime() LIMIT in
+         *  any case, returning the best move of the deepest iteration
+         *  completed (or, if none, the best found so far by the first).
+         *  Returns null if stopped before finding a move. */
+        Move deepen(Board board, int sense, long limit) {
+            _searchStart = System.nanoTime();
+            _nextProgress = _progress ? _searchStart + PROGRESS_INTERVAL : 0;
+            _bestSoFar = null;
+            _deadline = limit;
+            Move best = null;
+            try {
+                if (_moveTime <= 0 && limit == 0) {
+                    Events.IterationEvent event =
+                        new Events.IterationEvent();
+                    event.begin();
+                    long start = System.nanoTime();
+                    _rootDepth = _depth;
+                    _lastScore = findMove(board, _depth, true, sense,
+                                          -INFTY, INFTY);
+                    _lastDepth = _depth;
+                    iterationDone(event, start);
+                    return _lastFoundMove;
+                }
+                long deadline = limit;
+                if (_moveTime > 0) {
+                    long timeUp = System.nanoTime() + _moveTime * 1_000_000;
+                    deadline =
+                        limit == 0 ? timeUp : Math.min(timeUp, limit);
+                }
+                for (int depth = 1; depth <= _depth; depth += 1) {
+                    Events.IterationEvent event =
+                        new Events.IterationEvent();
+                    event.begin();
+                    long start = System.nanoTime();
+                    _rootDepth = depth;
+                    _lastScore = findMove(board, depth, true, sense,
+                                          -INFTY, INFTY);
+                    _lastDepth = depth;
+                    best = _lastFoundMove;
+                    iterationDone(event, start);
+                    _deadline = deadline;
+                    if (_hurried || System.nanoTime() > deadline) {
+                        break;
+                    }
+                }
+                return best;
+            } catch (SearchTimeout excp) {
+                if (_stopped || cancelled()) {
+                    return null;
+                } else if (best != null) {
+                    return best;
+                } else if (_bestSoFar != null) {
+                    return _bestSoFar;
+                } else {
+                    return board.getMoves().get(0);
+                }
+            } finally {
+                _deadline = 0;
+            }
+        }
+
+        /** Search BOARD for the side with the given SENSE to depths
+         *  FIRSTDEPTH, FIRSTDEPTH + 1, ..., up to my depth, leaving the
+         *  results in the transposition table, until stopped. */
+        void deepen(Board board, int firstDepth, int sense) {
+            try {
+                for (int depth = firstDepth; depth <= _depth && !_stopped;
+                     depth += 1) {
+                    _rootDepth = depth;
+                    findMove(board, depth, false, sense, -INFTY, INFTY);
+                }
+            } catch (SearchTimeout excp) {
+                /* Stopped. */
+            }
+        }
+
+        /** Record the end of the iteration of findMove that began EVENT
+         *  at time START (from System.nanoTime()) and has just
+         *  completed. */
+        private void iterationDone(Events.IterationEvent event, long start) {
+            long now = System.nanoTime();
+            _sstats.iteration(_lastDepth, now - start);
+            _bestSoFar = _lastFoundMove;
+            if (_progress) {
+                progress(now);
+            }
+            if (_listener != null) {
+                _listener.iteration(_lastDepth, _lastScore, _sstats.nodes(),
+                                    now - _searchStart, _lastFoundMove);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.depth = _lastDepth;
+                event.nodes = _sstats.nodes();
+                event.score = _lastScore;
+                event.move = String.valueOf(_lastFoundMove);
+                event.commit();
+            }
+        }
+
+        /** Find a move from position BOARD and return its value,
+         *  recording the move found in _lastFoundMove iff SAVEMOVE. The
+         *  move should have maximal value or have value > BETA if
+         *  SENSE==1, and minimal value or value < ALPHA if SENSE==-1.
+         *  Searches up to DEPTH levels.  Searching at level 0 simply
+         *  returns a static estimate of the board value and does not set
+         *  _lastMoveFound. */
+        private int findMove(Board board, int depth, boolean saveMove,
+                             int sense, int alpha, int beta) {
+            Move best = null;
+
+            _sstats.node(_rootDepth - depth);
+            if (_sstats.nodes() % CLOCK_INTERVAL == 0) {
+                checkClock();
+            }
+            if (depth == 0) {
+                _sstats.leaf();
+                return staticScore(board);
+            }
+            _sstats.expansion();
+            int alpha0 = alpha, beta0 = beta;
+            long key = 0, entry = TranspositionTable.MISS;
+            if (_table != null) {
+                _position.set(board);
+                key = _position.key();
+                entry = _table.probe(key);
+                _sstats.tableProbe(entry != TranspositionTable.MISS);
+                if (entry != TranspositionTable.MISS && !saveMove
+                    && TranspositionTable.depth(entry) >= depth) {
+                    int score = TranspositionTable.score(entry);
+                    switch (TranspositionTable.bound(entry)) {
+                    case TranspositionTable.EXACT:
+                        return Math.max(alpha, Math.min(beta, score));
+                    case TranspositionTable.LOWER:
+                        if (score >= beta) {
+                            return beta;
+                        }
+                        break;
+                    default:
+                        if (score <= alpha) {
+                            return alpha;
+                        }
+                        break;
+                    }
+                }
+            }
 
-    /** Find a move from position BOARD and return its value, recording
-     *  the move found in _lastFoundMove iff SAVEMOVE. The move
-     *  should have maximal value or have value > BETA if SENSE==1,
-     *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     *  DEPTH levels.  Searching at level 0 simply returns a static estimate
-     *  of the board value and does not set _lastMoveFound. */
-    private int findMove(Board board, int depth, boolean saveMove, int sense,
-                         int alpha, int beta) {
-        Move best = null;
-
-        if (depth == 0) {
-            return staticScore(board);
-        } else {
             int moveFound;
-            ArrayList<Move> moves = board.getMoves();
+            ArrayList<Move> moves;
+            if (_genTimes == null) {
+                moves = board.getMoves();
+            } else {
+                long start = System.nanoTime();
+                moves = board.getMoves();
+                _genTimes.record(System.nanoTime() - start);
+            }
+            if (entry != TranspositionTable.MISS) {
+                for (int i = 1; i < moves.size(); i += 1) {
+                    if (TranspositionTable.matches(moves.get(i), entry)) {
+                        Collections.swap(moves, 0, i);
+                        break;
+                    }
+                }
+            }
             ArrayList<Move> movesPossible = new ArrayList<>();
             ArrayList<Move> jumpsPossible = new ArrayList<>();
 
+            int k = -1;
             for (Move mov: moves) {
                 if (beta <= alpha) {
                     break;
                 }
-                if (board.legalMove(mov)) {
+                k += 1;
+                if (board.isLegal(mov)) {
                     if (mov.isJump()) {
                         jumpsPossible.add(mov);
                     } else {
@@ -94,6 +465,12 @@ class AI extends Player {
                     beta = moveFound;
                     best = mov;
                 }
+                if (saveMove && best == mov) {
+                    _bestSoFar = mov;
+                }
+                if (beta <= alpha) {
+                    _sstats.cutoff(k);
+                }
             }
             if (!board.gameOver()) {
                 if (best == null && saveMove) {
@@ -106,52 +483,140 @@ class AI extends Player {
                     }
                 }
             }
-        }
-
-        if (saveMove) {
-            _lastFoundMove = best;
-        }
 
-        return sense == -1 ? beta : alpha;
-    }
+            if (saveMove) {
+                _lastFoundMove = best;
+            }
 
-    /** Return a heuristic value for BOARD. */
-    private int staticScore(Board board) {
-        int whitePieces = 0 , blackPieces = 0;
-        PieceColor[] b = board.getBoard();
-        for (int i = 0; i < b.length; i += 1) {
-            if (b[i] == WHITE) {
-                whitePieces += 1;
-            } else if (b[i] == BLACK) {
-                blackPieces -= 1;
+            int result = sense == -1 ? beta : alpha;
+            if (_table != null) {
+                int bound;
+                if (sense == 1) {
+                    bound = result <= alpha0 ? TranspositionTable.UPPER
+                        : result >= beta ? TranspositionTable.LOWER
+                        : TranspositionTable.EXACT;
+                } else {
+                    bound = result >= beta0 ? TranspositionTable.LOWER
+                        : result <= alpha ? TranspositionTable.UPPER
+                        : TranspositionTable.EXACT;
+                }
+                _table.store(key, best, result, depth, bound);
             }
+            return result;
         }
 
-        ArrayList<Move> moves = board.getMoves();
-        int jumps = 0;
-        int maxLength = moves.size() > 0 ? moveSize(moves.get(0)) : 0;
-        for (int i = 1; i < moves.size(); i += 1) {
-            Move move1 = moves.get(i);
-            if (move1.isJump()) {
-                jumps += 1;
+        /** Stop my search if it has been stopped, the request for it
+         *  cancelled, or its time is up, and report its progress if a
+         *  report is due. */
+        private void checkClock() {
+            if (_stopped || _hurried || cancelled()) {
+                throw TIMEOUT;
+            }
+            if (_deadline == 0 && _nextProgress == 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (_deadline != 0 && now > _deadline) {
+                throw TIMEOUT;
+            }
+            if (_nextProgress != 0 && now >= _nextProgress) {
+                progress(now);
             }
-            maxLength = Math.max(maxLength, moveSize(move1));
         }
-        if (board.whoseMove() == WHITE) {
-            return whitePieces + blackPieces + jumps + maxLength;
-        } else {
-            return whitePieces + blackPieces - jumps - maxLength;
+
+        /** Report the progress of my search at time NOW (from
+         *  System.nanoTime()). */
+        private void progress(long now) {
+            _nextProgress = now + PROGRESS_INTERVAL;
+            long rate =
+                _sstats.nodes() * 1_000_000_000L
+                / Math.max(1, now - _searchStart);
+            game().reportProgress("%s thinking: depth %d, best %s,"
+                                  + " %d nodes/s", myColor(), _rootDepth,
+                                  _bestSoFar == null ? "-" : _bestSoFar,
+                                  rate);
         }
-    }
 
-    /** Returns the size of the jump move MOVE. */
-    private int moveSize(Move move) {
-        int size = 0;
-        while (move.jumpTail() != null) {
-            size += 1;
-            move = move.jumpTail();
+        /** Return a heuristic value for BOARD. */
+        private int staticScore(Board board) {
+            if (_evalTimes == null) {
+                _position.set(board);
+                return _weights.score(_position, _scratch, _features);
+            }
+            long start = System.nanoTime();
+            _position.set(board);
+            int result = _weights.score(_position, _scratch, _features);
+            _evalTimes.record(System.nanoTime() - start);
+            return result;
         }
 
-        return size;
+        /** Statistics of this search. */
+        private final SearchStats _sstats;
+        /** True when a search should stop. */
+        private volatile boolean _stopped;
+        /** True when a search should stop and return its best move so
+         *  far. */
+        private volatile boolean _hurried;
+        /** System.nanoTime() at which the current search must stop, or
+         *  0. */
+        private long _deadline;
+        /** Depth of the iteration in progress. */
+        private int _rootDepth;
+        /** True iff this search reports its progress. */
+        private boolean _progress;
+        /** System.nanoTime() at the start of the current search. */
+        private long _searchStart;
+        /** System.nanoTime() at which the next report of progress is
+         *  due, or 0 if none. */
+        private long _nextProgress;
+        /** The best move found so far by the current search, or null. */
+        private Move _bestSoFar;
+        /** Histograms of move generation and evaluation times for the
+         *  current search, or null if these are not being timed. */
+        private LatencyHistogram _genTimes, _evalTimes;
+        /** Scratch space for staticScore and table keys. */
+        private final CompactBoard _position = new CompactBoard();
+        /** Scratch space for staticScore. */
+        private final long[] _scratch = new long[CompactBoard.MAX_MOVES];
+        /** Scratch space for staticScore. */
+        private final int[] _features = new int[Weights.FEATURES];
     }
+
+    /** True iff my settings come from my game's context. */
+    private boolean _useContext;
+
+    /** Time limit per move (ms), or 0 for none. */
+    private long _moveTime;
+    /** System.nanoTime() by which the next search must end, or 0. */
+    private long _limit;
+    /** Depth of the last completed search. */
+    private int _lastDepth;
+
+    /** The move found by the last call to one of the ...FindMove methods
+     *  below. */
+    private Move _lastFoundMove;
+
+    /** Search depth. */
+    private int _depth;
+
+    /** Number of searching threads. */
+    private int _threads;
+
+    /** Transposition table, or null. */
+    private TranspositionTable _table;
+
+    /** Receives reports of completed depths, or null. */
+    private Listener _listener;
+
+    /** Statistics of the last search. */
+    private final SearchStats _stats = new SearchStats();
+
+    /** The main thread's search. */
+    private final Search _main = new Search(_stats);
+
+    /** Value of the position searched by the last search. */
+    private int _lastScore;
+
+    /** Evaluation weights. */
+    private final Weights _weights;
 }
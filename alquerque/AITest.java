@@ -0,0 +1,127 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/** Tests of AI (and of stopping MCTS).
+ *  @author Mudabbir Khan
+ */
+public class AITest {
+
+    @Test
+    public void testStopReportsProgress() throws InterruptedException {
+        List<String> reports = Collections.synchronizedList(new ArrayList<>());
+        EngineContext context = new EngineContext();
+        context.setProgress(true);
+        Game game = new Game(new Board(), prompt -> null,
+                             new EngineGame.SilentReporter() {
+                                 @Override
+                                 public void progressMsg(String format,
+                                                         Object... args) {
+                                     reports.add(String.format(format,
+                                                               args));
+                                 }
+                             }, context);
+        AI ai = new AI(game, PieceColor.WHITE, 20, Weights.DEFAULT);
+        Move[] result = { Move.parseMove("a1-a2") };
+        Thread searcher = new Thread(() -> result[0] = ai.myMove());
+        searcher.start();
+        for (int i = 0; i < 100 && reports.isEmpty(); i += 1) {
+            Thread.sleep(50);
+        }
+        ai.stop();
+        searcher.join(5000);
+        assertFalse(searcher.isAlive());
+        assertNull(result[0]);
+        assertFalse(reports.isEmpty());
+        assertTrue(reports.get(0).startsWith("White thinking: depth 20"));
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        Board board = new Board();
+        Game game = new Game(board, prompt -> null,
+                             new EngineGame.SilentReporter());
+        AI ai = new AI(game, PieceColor.WHITE, 20, Weights.DEFAULT);
+        long start = System.nanoTime();
+        CompletableFuture<Move> move =
+            ai.requestMove(start + 200_000_000, new CancellationToken());
+        Move result = move.get(10, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        assertNotNull(result);
+        assertTrue(board.legalMove(result));
+        int depth = ai.lastDepth();
+        assertTrue(depth >= 1 && depth < 20);
+        AI shallow = new AI(game, PieceColor.WHITE, depth, Weights.DEFAULT);
+        assertEquals(shallow.myMove(), result);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        Game game = new Game(new Board(), prompt -> null,
+                             new EngineGame.SilentReporter());
+        AI ai = new AI(game, PieceColor.WHITE, 20, Weights.DEFAULT);
+        CancellationToken token = new CancellationToken();
+        int[] calls = { 0 };
+        token.onCancel(() -> calls[0] += 1);
+        new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException excp) {
+                return;
+            }
+            token.cancel();
+        }).start();
+        assertNull(ai.requestMove(0, token).get(10, TimeUnit.SECONDS));
+        token.cancel();
+        assertEquals(1, calls[0]);
+        token.onCancel(() -> calls[0] += 1);
+        assertEquals(2, calls[0]);
+    }
+
+    @Test
+    public void testCancelAfterMove() throws Exception {
+        Game game = new Game(new Board(), prompt -> null,
+                             new EngineGame.SilentReporter());
+        AI ai = new AI(game, PieceColor.WHITE, 3, Weights.DEFAULT);
+        CancellationToken token = new CancellationToken();
+        assertNotNull(ai.requestMove(0, token).get(10, TimeUnit.SECONDS));
+        token.cancel();
+        ai.stop();
+        assertNotNull(ai.requestMove(0, new CancellationToken())
+                      .get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testStopMCTS() throws Exception {
+        Game game = new Game(new Board(), prompt -> null,
+                             new EngineGame.SilentReporter());
+        MCTS mcts = new MCTS(game, PieceColor.WHITE, 100_000_000, 2);
+        CancellationToken token = new CancellationToken();
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException excp) {
+                return;
+            }
+            token.cancel();
+        }).start();
+        assertNull(mcts.requestMove(0, token).get(10, TimeUnit.SECONDS));
+        assertTrue(mcts.lastNodes() < 100_000_000);
+
+        Move[] result = { Move.parseMove("a1-a2") };
+        Thread searcher = new Thread(() -> result[0] = mcts.myMove());
+        searcher.start();
+        Thread.sleep(100);
+        mcts.stop();
+        searcher.join(10_000);
+        assertFalse(searcher.isAlive());
+        assertNull(result[0]);
+    }
+}
@@ -0,0 +1,227 @@
+package qirkat;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Analyzes a stream of positions in parallel.  Each input line gives a
+ *  position in the form of the 'set' command (the word "set" is
+ *  optional); blank lines and lines starting with '#' are skipped.  For
+ *  each position, one output line is written, in input order:
+ *
+ *      SIDE BOARD MOVE SCORE DEPTH NODES MSEC
+ *
+ *  where SIDE and BOARD are the position (BOARD as 25 characters),
+ *  MOVE is the AI's chosen move ("-" if the side to move has none),
+ *  SCORE is its value (positive favors white), DEPTH the depth of the
+ *  last completed search, and NODES and MSEC the positions searched
+ *  and time taken.  A line that is not a position produces a line
+ *  starting with "# error:".
+ *
+ *  At most a fixed window of positions is in progress at once, and
+ *  results are written as soon as all earlier ones are, so memory use
+ *  does not grow with the size of the input.
+ *  @author Mudabbir Khan
+ */
+public class Analyzer {
+
+    /** Number of positions queued per thread. */
+    private static final int POSITIONS_AHEAD = 16;
+
+    /** Analyze positions as described by ARGS:
+     *      [--depth N] [--movetime MSEC] [--threads N] [--seed S]
+     *      [--weights FILE] [INPUT [OUTPUT]]
+     *  reading INPUT (default the standard input) and writing OUTPUT
+     *  (default the standard output).  With --movetime, each search
+     *  deepens iteratively, up to depth N if also given, until MSEC
+     *  milliseconds have passed. */
+    public static void main(String[] args) {
+        int depth = 0,
+            threads = Runtime.getRuntime().availableProcessors();
+        long moveTime = 0, seed = 0;
+        String input = null, output = null;
+        Weights weights = Weights.DEFAULT;
+        try {
+            for (int i = 0; i < args.length; i += 1) {
+                switch (args[i]) {
+                case "--depth":
+                    depth = Integer.parseInt(args[++i]);
+                    break;
+                case "--movetime":
+                    moveTime = Long.parseLong(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--weights":
+                    weights = Weights.load(args[++i]);
+                    break;
+                default:
+                    if (input == null) {
+                        input = args[i];
+                    } else if (output == null) {
+                        output = args[i];
+                    } else {
+                        usage();
+                    }
+                    break;
+                }
+            }
+            if (depth < 0 || moveTime < 0 || threads <= 0) {
+                usage();
+            }
+            if (depth == 0) {
+                depth = moveTime > 0 ? EngineContext.MAX_DEPTH
+                    : AI.MAX_DEPTH;
+            }
+            Analyzer analyzer =
+                new Analyzer(depth, moveTime, weights, seed);
+            try (Reader in = input == null
+                     ? new InputStreamReader(System.in)
+                     : new FileReader(input);
+                 Writer out = output == null
+                     ? new OutputStreamWriter(System.out)
+                     : new FileWriter(output)) {
+                analyzer.run(new BufferedReader(in),
+                             new BufferedWriter(out), threads);
+            }
+        } catch (IllegalArgumentException
+                 | ArrayIndexOutOfBoundsException excp) {
+            usage();
+        } catch (GameException | IOException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Give usage message and exit. */
+    static void usage() {
+        System.err.println("Usage: java qirkat.Analyzer [--depth N]"
+                           + " [--movetime MSEC] [--threads N] [--seed S]"
+                           + " [--weights FILE] [INPUT [OUTPUT]]");
+        System.exit(1);
+    }
+
+    /** An analyzer searching DEPTH levels, or for MOVETIME milliseconds
+     *  if positive, evaluating with WEIGHTS, and seeding the random
+     *  numbers for the Kth position with SEED + K. */
+    Analyzer(int depth, long moveTime, Weights weights, long seed) {
+        _depth = depth;
+        _moveTime = moveTime;
+        _weights = weights;
+        _seed = seed;
+    }
+
+    /** Analyze the positions read from IN on THREADS threads, writing
+     *  the results to OUT in order. */
+    void run(BufferedReader in, BufferedWriter out, int threads)
+        throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "analyzer");
+            t.setDaemon(true);
+            return t;
+        });
+        ArrayDeque<Future<String>> pending = new ArrayDeque<>();
+        int window = POSITIONS_AHEAD * threads;
+        long count = 0;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String text = line;
+                long k = count;
+                Command position;
+                try {
+                    position = Tournament.parsePosition(text);
+                } catch (GameException excp) {
+                    position = null;
+                    pending.add(pool.submit(() -> "# error: " + text));
+                }
+                if (position != null) {
+                    Command pos = position;
+                    pending.add(pool.submit(() -> analyze(text, pos, k)));
+                    count += 1;
+                }
+                while (pending.size() >= window) {
+                    writeLine(out, pending.remove().get());
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeLine(out, pending.remove().get());
+            }
+            out.flush();
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Return the result line for POSITION, the Kth position read, which
+     *  came from the input line TEXT. */
+    String analyze(String text, Command position, long k) {
+        Worker worker = _workers.get();
+        Board board = worker._board;
+        try {
+            worker._game.doSet(position.operands());
+        } catch (IllegalArgumentException excp) {
+            return "# error: " + text;
+        }
+        worker._game.context().setSeed(_seed + k);
+        PieceColor side = board.whoseMove();
+        String prefix = side.toString().toLowerCase() + " "
+            + position.operands()[1].replaceAll("\\s", "");
+        if (board.getMoves().isEmpty()) {
+            return prefix + " - 0 0 0 0";
+        }
+        AI ai = new AI(worker._game, side, _depth, _weights);
+        ai.setMoveTime(_moveTime);
+        long start = System.nanoTime();
+        Move move = ai.myMove();
+        long time = (System.nanoTime() - start) / 1_000_000;
+        return String.format("%s %s %d %d %d %d", prefix, move,
+                             ai.lastScore(), ai.lastDepth(),
+                             ai.lastNodes(), time);
+    }
+
+    /** Write LINE to OUT as a line. */
+    private static void writeLine(BufferedWriter out, String line)
+        throws IOException {
+        out.write(line);
+        out.newLine();
+    }
+
+    /** The board and game one thread analyzes on. */
+    private static class Worker {
+        /** The board. */
+        private final Board _board = new Board();
+        /** A silent game on _board, supplying the AI's random numbers. */
+        private final Game _game =
+            new Game(_board, prompt -> null, new EngineGame.SilentReporter());
+    }
+
+    /** Search depth (maximum depth, with a time limit). */
+    private final int _depth;
+    /** Time limit per position (ms), or 0. */
+    private final long _moveTime;
+    /** Evaluation weights. */
+    private final Weights _weights;
+    /** Seed for the first position. */
+    private final long _seed;
+    /** Each thread's board and game. */
+    private final ThreadLocal<Worker> _workers =
+        ThreadLocal.withInitial(Worker::new);
+}
@@ -0,0 +1,63 @@
+package qirkat;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Analyzer.
+ *  @author Mudabbir Khan
+ */
+public class AnalyzerTest {
+
+    /** Return the output of analyzing INPUT to depth 2 on THREADS
+     *  threads. */
+    private static String analyze(String input, int threads)
+        throws IOException {
+        StringWriter out = new StringWriter();
+        new Analyzer(2, 0, Weights.DEFAULT, 0)
+            .run(new BufferedReader(new StringReader(input)),
+                 new BufferedWriter(out), threads);
+        return out.toString();
+    }
+
+    @Test
+    public void testOrderAndErrors() throws IOException {
+        StringBuilder input = new StringBuilder("# positions\n");
+        for (int i = 0; i < 200; i += 1) {
+            input.append(i % 2 == 0 ? "set white" : "black")
+                .append(" wwwwwwwwwwww-bbbbbbbbbbbb\n");
+        }
+        input.append("nonsense\n");
+        input.append("set white -------------------------\n");
+        String[] lines = analyze(input.toString(), 3).split("\n");
+        assertEquals(202, lines.length);
+        for (int i = 0; i < 200; i += 1) {
+            String[] fields = lines[i].split(" ");
+            assertEquals(7, fields.length);
+            assertEquals(i % 2 == 0 ? "white" : "black", fields[0]);
+            assertEquals("wwwwwwwwwwww-bbbbbbbbbbbb", fields[1]);
+            assertEquals("2", fields[4]);
+        }
+        assertEquals("# error: nonsense", lines[200]);
+        assertEquals("white ------------------------- - 0 0 0 0",
+                     lines[201]);
+    }
+
+    @Test
+    public void testDeterministic() throws IOException {
+        String input = "white wwwwwwww-wwwwbbbbbbbbbbbb\n"
+            + "black wwwwwwwwwwww-bbbbbbbbbbbb\n";
+        assertEquals(withoutTimes(analyze(input, 1)),
+                     withoutTimes(analyze(input, 2)));
+    }
+
+    /** Return OUTPUT with the time field of each line removed. */
+    private static String withoutTimes(String output) {
+        return output.replaceAll(" [0-9]+\n", "\n");
+    }
+}
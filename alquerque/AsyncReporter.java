@@ -0,0 +1,257 @@
+package qirkat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Formatter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** A Reporter that writes messages, one per line, to a Writer from a
+ *  separate thread.  Messages are formatted into a batch buffer, and
+ *  full batches are passed to the writing thread over a bounded queue
+ *  (so that a slow destination eventually slows the game rather than
+ *  filling memory).  The partial batch is passed on, and the
+ *  destination flushed, after each outcome message, when flush() is
+ *  called, every FLUSH_MILLIS milliseconds, and on close().  Output
+ *  appears in the order in which messages were reported.
+ *  @author Mudabbir Khan
+ */
+class AsyncReporter implements Reporter, Closeable {
+
+    /** Default size at which a batch is passed to the writing thread. */
+    static final int BATCH_CHARS = 8192;
+    /** Number of batches that may wait to be written. */
+    static final int QUEUED_BATCHES = 16;
+    /** Longest time for which a message waits in a partial batch. */
+    static final long FLUSH_MILLIS = 50;
+
+    /** A Reporter writing to OUT. */
+    AsyncReporter(Writer out) {
+        this(out, BATCH_CHARS);
+    }
+
+    /** A Reporter writing to OUT in batches of about BATCHCHARS
+     *  characters. */
+    AsyncReporter(Writer out, int batchChars) {
+        _out = out;
+        _batchChars = batchChars;
+        _batch = new StringBuilder(batchChars);
+        _writer = new Thread(this::writeBatches, "reporter");
+        _writer.setDaemon(true);
+        _writer.start();
+    }
+
+    @Override
+    public void errMsg(String format, Object... args) {
+        message(false, format, args);
+    }
+
+    @Override
+    public void outcomeMsg(String format, Object... args) {
+        message(true, format, args);
+    }
+
+    @Override
+    public void moveMsg(String format, Object... args) {
+        message(false, format, args);
+    }
+
+    @Override
+    public void textMsg(String line) {
+        _lock.lock();
+        try {
+            _batch.append(line).append(NEWLINE);
+            endMessage(false);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public void promptMsg(String prompt) {
+        _lock.lock();
+        try {
+            _batch.append(prompt);
+            endMessage(false);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /** Pass any partial batch to be written and flushed, without
+     *  waiting for it to be written. */
+    @Override
+    public void flush() {
+        _lock.lock();
+        try {
+            endMessage(true);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /** Write all pending messages, flush the destination, and stop the
+     *  writing thread.  The destination is not closed. */
+    @Override
+    public void close() throws IOException {
+        _lock.lock();
+        try {
+            if (_closed) {
+                return;
+            }
+            endMessage(true);
+            enqueue(END);
+            _closed = true;
+        } finally {
+            _lock.unlock();
+        }
+        try {
+            _writer.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+        if (_failure != null) {
+            throw _failure;
+        }
+    }
+
+    /** Add the message formed from FORMAT and ARGS as for String.format,
+     *  and pass the batch on if it is full or FLUSH. */
+    private void message(boolean flush, String format, Object... args) {
+        _lock.lock();
+        try {
+            if (args.length == 0 && format.indexOf('%') < 0) {
+                _batch.append(format);
+            } else {
+                _formatter.format(format, args);
+                _batch.append(_scratch);
+                _scratch.setLength(0);
+            }
+            _batch.append(NEWLINE);
+            endMessage(flush);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /** Having added a message to _batch, pass it to the writing thread if
+     *  it is full, or if FLUSH and it is not empty.  Requires _lock. */
+    private void endMessage(boolean flush) {
+        if (_batch.length() >= _batchChars
+            || (flush && _batch.length() > 0)) {
+            StringBuilder full = _batch;
+            StringBuilder fresh = _free.poll();
+            _batch = fresh == null ? new StringBuilder(_batchChars) : fresh;
+            enqueue(full);
+        }
+    }
+
+    /** Queue BATCH for writing, waiting for room if necessary.  Requires
+     *  _lock. */
+    private void enqueue(StringBuilder batch) {
+        if (_closed) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                _full.put(batch);
+                break;
+            } catch (InterruptedException excp) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Body of the writing thread: write batches as they arrive, and
+     *  partial batches that have waited FLUSH_MILLIS, until END. */
+    private void writeBatches() {
+        while (true) {
+            StringBuilder batch;
+            try {
+                batch = _full.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException excp) {
+                continue;
+            }
+            if (batch == null) {
+                batch = takePartial();
+                if (batch == null) {
+                    continue;
+                }
+            } else if (batch == END) {
+                return;
+            }
+            write(batch);
+            batch.setLength(0);
+            _free.offer(batch);
+        }
+    }
+
+    /** Return the partial batch, replacing it with an empty one, if it
+     *  is not empty and nothing is queued ahead of it; otherwise null. */
+    private StringBuilder takePartial() {
+        if (!_lock.tryLock()) {
+            return null;
+        }
+        try {
+            if (_batch.length() == 0 || !_full.isEmpty() || _closed) {
+                return null;
+            }
+            StringBuilder result = _batch;
+            StringBuilder fresh = _free.poll();
+            _batch = fresh == null ? new StringBuilder(_batchChars) : fresh;
+            return result;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /** Write BATCH to the destination and flush it.  After a failure,
+     *  discard output. */
+    private void write(StringBuilder batch) {
+        if (_failure != null) {
+            return;
+        }
+        try {
+            _out.append(batch);
+            _out.flush();
+        } catch (IOException excp) {
+            _failure = excp;
+        }
+    }
+
+    /** Line terminator. */
+    private static final String NEWLINE = System.lineSeparator();
+    /** Marks the end of the queued batches. */
+    private static final StringBuilder END = new StringBuilder();
+
+    /** Destination. */
+    private final Writer _out;
+    /** The writing thread. */
+    private final Thread _writer;
+    /** Guards _batch, _formatter and the order of queued batches. */
+    private final ReentrantLock _lock = new ReentrantLock();
+    /** Batches waiting to be written. */
+    private final ArrayBlockingQueue<StringBuilder> _full =
+        new ArrayBlockingQueue<>(QUEUED_BATCHES);
+    /** Written batches available for reuse. */
+    private final ArrayBlockingQueue<StringBuilder> _free =
+        new ArrayBlockingQueue<>(QUEUED_BATCHES);
+    /** Size at which a batch is passed to the writing thread. */
+    private final int _batchChars;
+    /** The batch being filled. */
+    private StringBuilder _batch;
+    /** Formatting buffer. */
+    private final StringBuilder _scratch = new StringBuilder();
+    /** Formats into _scratch. */
+    private final Formatter _formatter = new Formatter(_scratch);
+    /** True once close() has been called. */
+    private boolean _closed;
+    /** The error that stopped output, if any. */
+    private volatile IOException _failure;
+}
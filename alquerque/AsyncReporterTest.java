@@ -0,0 +1,47 @@
+package qirkat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of AsyncReporter.
+ *  @author Mudabbir Khan
+ */
+public class AsyncReporterTest {
+
+    /** Line terminator. */
+    private static final String NL = System.lineSeparator();
+
+    @Test
+    public void testOrderAndClose() throws IOException {
+        StringWriter out = new StringWriter();
+        AsyncReporter reporter = new AsyncReporter(out);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i += 1) {
+            reporter.moveMsg("Move %d.", i);
+            expected.append("Move ").append(i).append(".").append(NL);
+            if (i % 1000 == 0) {
+                reporter.promptMsg("> ");
+                expected.append("> ");
+            }
+        }
+        reporter.errMsg("All done.");
+        expected.append("All done.").append(NL);
+        reporter.close();
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    @Test
+    public void testOutcomeFlushes() throws Exception {
+        StringWriter out = new StringWriter();
+        AsyncReporter reporter = new AsyncReporter(out);
+        reporter.outcomeMsg("%s wins.", "White");
+        for (int i = 0; i < 100 && out.toString().isEmpty(); i += 1) {
+            Thread.sleep(10);
+        }
+        assertEquals("White wins." + NL, out.toString());
+        reporter.close();
+    }
+}
@@ -1,6 +1,7 @@
 package qirkat;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Formatter;
 import java.util.Observable;
 import java.util.Observer;
@@ -17,7 +18,9 @@ import static qirkat.Move.*;
  *  number of the square in row-major order (with row 0 being the bottom row)
  *  counting from 0).
  *
- *  Moves on this board are denoted by Moves.
+ *  Moves on this board are denoted by Moves.  Each change to a board is
+ *  passed to its observers as a BoardChange describing just that
+ *  change.
  *  @author Mudabbir Khan
  */
 class Board extends Observable {
@@ -39,13 +42,27 @@ class Board extends Observable {
         clear();
     }
 
-    /** A copy of B. */
+    /** A copy of B, sharing its move cache. */
     Board(Board b) {
+        _moveCache = b.moveCache();
         internalCopy(b);
     }
 
+    /** Return the cache of generated moves I use, or null if none. */
+    MoveCache moveCache() {
+        return _moveCache;
+    }
+
+    /** Take the moves of positions from CACHE, and store the moves
+     *  generated for them there (none if CACHE is null).  Copies of me
+     *  made afterwards share CACHE. */
+    void setMoveCache(MoveCache cache) {
+        _moveCache = cache;
+    }
+
     /** Return a constant view of me (allows any access method, but no
-     *  method that modifies it). */
+     *  method that modifies it).  The view keeps itself up to date by
+     *  applying each change to me as it is reported. */
     Board constantView() {
         return this.new ConstantBoard();
     }
@@ -60,28 +77,27 @@ class Board extends Observable {
 
         setPieces("w w w w w w w w w w b b - w w b b b b b b b b b b",
                 _whoseMove);
-
-        setChanged();
-        notifyObservers();
     }
 
     /** Copy B into me. */
     void copy(Board b) {
         internalCopy(b);
+        setChanged();
+        notifyObservers(BoardChange.RESET);
     }
 
-    /** Copy B into me. */
+    /** Copy B into me.  The saved restrictions in the history are
+     *  shared, since they are never modified. */
     private void internalCopy(Board b) {
-        for (int i = 0; i < b._board.length; i += 1) {
-            set(i, b._board[i]);
-        }
-        for (int j = 0; j < b._backTrack.length; j += 1) {
-            _backTrack[j] = b._backTrack[j];
-        }
+        System.arraycopy(b._board, 0, _board, 0, _board.length);
+        System.arraycopy(b._backTrack, 0, _backTrack, 0, _backTrack.length);
         this._whoseMove = b.whoseMove();
         this._gameOver = b.gameOver();
+        this._completedMoves.clear();
         this._completedMoves.addAll(b._completedMoves);
+        this._trackHistory.clear();
         this._trackHistory.addAll(b._trackHistory);
+        publish();
     }
 
     /** Set my contents as defined by STR.  STR consists of 25 characters,
@@ -108,13 +124,13 @@ class Board extends Observable {
         for (int k = 0; k < str.length(); k += 1) {
             switch (str.charAt(k)) {
             case '-':
-                set(k, EMPTY);
+                put(k, EMPTY);
                 break;
             case 'b': case 'B':
-                set(k, BLACK);
+                put(k, BLACK);
                 break;
             case 'w': case 'W':
-                set(k, WHITE);
+                put(k, WHITE);
                 break;
             default:
                 break;
@@ -123,8 +139,9 @@ class Board extends Observable {
         for (int i = 0; i < _backTrack.length; i += 1) {
             _backTrack[i] = '-';
         }
+        publish();
         setChanged();
-        notifyObservers();
+        notifyObservers(BoardChange.RESET);
     }
 
     /** Return true iff the game is over: i.e., if the current player has
@@ -155,10 +172,26 @@ class Board extends Observable {
 
     /** Set get(K) to V, where K is the linearized index of a square. */
     public void set(int k, PieceColor v) {
+        put(k, v);
+        publish();
+        setChanged();
+        notifyObservers(BoardChange.square(k, v));
+    }
+
+    /** Set get(K) to V without notifying observers. */
+    private void put(int k, PieceColor v) {
         assert validSquare(k);
         _board[k] = v;
     }
 
+    /** Return the horizontal-move restriction on the square at linearized
+     *  index K: 'l' if its piece may not next move left, 'r' if it may
+     *  not next move right, and '-' otherwise. */
+    char backTrack(int k) {
+        assert validSquare(k);
+        return _backTrack[k];
+    }
+
     /** Return true iff MOV is legal on the current board. */
     boolean legalMove(Move mov) {
         if (get(mov.fromIndex()) != whoseMove()) {
@@ -193,11 +226,49 @@ class Board extends Observable {
         return result;
     }
 
-    /** Add all legal moves from the current position to MOVES. */
+    /** Add all legal moves from the current position to MOVES.  With a
+     *  move cache, the moves of each position are generated once and
+     *  then taken from the cache, as long as they remain there. */
     void getMoves(ArrayList<Move> moves) {
         if (gameOver()) {
             return;
         }
+        MoveCache cache = moveCache();
+        if (cache == null) {
+            generateMoves(moves);
+            return;
+        }
+        long key = key();
+        Move[] cached = cache.get(key);
+        if (cached == null) {
+            ArrayList<Move> generated = new ArrayList<>();
+            generateMoves(generated);
+            cached = generated.toArray(new Move[generated.size()]);
+            cache.put(key, cached);
+        }
+        Collections.addAll(moves, cached);
+    }
+
+    /** Return true iff MOV is legal on the current board, as for
+     *  legalMove, using the moves in my move cache for the current
+     *  position if they are there. */
+    boolean isLegal(Move mov) {
+        MoveCache cache = moveCache();
+        Move[] cached = cache == null ? null : cache.get(key());
+        if (cached == null) {
+            return legalMove(mov);
+        }
+        for (Move m : cached) {
+            if (m.equals(mov)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Add all legal moves from the current position to MOVES,
+     *  generating them afresh. */
+    private void generateMoves(ArrayList<Move> moves) {
         if (jumpPossible()) {
             for (int k = 0; k <= MAX_INDEX; k += 1) {
                 getJumps(moves, k);
@@ -226,9 +297,9 @@ class Board extends Observable {
         for (int i = 0; i < _board.length; i += 1) {
             Move mov = Move.move(k, i);
             if (jumpPossible(k, i)) {
-                set(mov.fromIndex(), EMPTY);
-                set(mov.toIndex(), whoseMove());
-                set(mov.jumpedIndex(), EMPTY);
+                put(mov.fromIndex(), EMPTY);
+                put(mov.toIndex(), whoseMove());
+                put(mov.jumpedIndex(), EMPTY);
                 ArrayList<Move> jumps = new ArrayList<>();
                 getJumps(jumps, i);
                 if (jumps.isEmpty()) {
@@ -238,9 +309,9 @@ class Board extends Observable {
                         moves.add(Move.move(mov, m));
                     }
                 }
-                set(mov.fromIndex(), whoseMove());
-                set(mov.toIndex(), EMPTY);
-                set(mov.jumpedIndex(), whoseMove().opposite());
+                put(mov.fromIndex(), whoseMove());
+                put(mov.toIndex(), EMPTY);
+                put(mov.jumpedIndex(), whoseMove().opposite());
             }
         }
     }
@@ -263,21 +334,21 @@ class Board extends Observable {
             return false;
         }
         if (!allowPartial) {
-            set(mov.fromIndex(), EMPTY);
-            set(mov.toIndex(), whoseMove());
-            set(mov.jumpedIndex(), EMPTY);
+            put(mov.fromIndex(), EMPTY);
+            put(mov.toIndex(), whoseMove());
+            put(mov.jumpedIndex(), EMPTY);
             boolean b;
             if (mov.jumpTail() == null) {
                 b = !jumpPossible(mov.toIndex());
-                set(mov.fromIndex(), whoseMove());
-                set(mov.toIndex(), EMPTY);
-                set(mov.jumpedIndex(), whoseMove().opposite());
+                put(mov.fromIndex(), whoseMove());
+                put(mov.toIndex(), EMPTY);
+                put(mov.jumpedIndex(), whoseMove().opposite());
                 return b;
             } else {
                 b = checkJump(mov.jumpTail(), allowPartial);
-                set(mov.fromIndex(), whoseMove());
-                set(mov.toIndex(), EMPTY);
-                set(mov.jumpedIndex(), whoseMove().opposite());
+                put(mov.fromIndex(), whoseMove());
+                put(mov.toIndex(), EMPTY);
+                put(mov.jumpedIndex(), whoseMove().opposite());
                 return b;
             }
         }
@@ -337,74 +408,155 @@ class Board extends Observable {
 
     /** Make the Move MOV on this Board, assuming it is legal. */
     void makeMove(Move mov) {
-        if (!legalMove(mov)) {
+        if (!isLegal(mov)) {
             System.out.println("Illegal move");
         } else {
-            _trackHistory.push(_backTrack);
-            if (mov.isJump()) {
-                makeJump(mov);
-            } else {
-                if (mov.isLeftMove()) {
-                    _backTrack[mov.toIndex()] = 'r';
-                } else if (mov.isRightMove()) {
-                    _backTrack[mov.toIndex()] = 'l';
-                }
-                set(mov.fromIndex(), EMPTY);
-                set(mov.toIndex(), whoseMove());
-            }
-            _backTrack[mov.fromIndex()] = '-';
-            _whoseMove = whoseMove().opposite();
-            _completedMoves.push(mov);
+            applyMove(mov);
             _gameOver = !isMove();
+            publish();
+
+            Events.MoveEvent event = new Events.MoveEvent();
+            if (event.shouldCommit()) {
+                event.side = _whoseMove.opposite().toString();
+                event.move = mov.toString();
+                event.commit();
+            }
 
             setChanged();
-            notifyObservers();
+            notifyObservers(BoardChange.moved(mov));
+        }
+    }
+
+    /** Make the legal move MOV, except for updating _gameOver and
+     *  notifying observers. */
+    private void applyMove(Move mov) {
+        _trackHistory.push(_backTrack.clone());
+        if (mov.isJump()) {
+            makeJump(mov);
+        } else {
+            if (mov.isLeftMove()) {
+                _backTrack[mov.toIndex()] = 'r';
+            } else if (mov.isRightMove()) {
+                _backTrack[mov.toIndex()] = 'l';
+            }
+            put(mov.fromIndex(), EMPTY);
+            put(mov.toIndex(), whoseMove());
         }
+        _backTrack[mov.fromIndex()] = '-';
+        _whoseMove = whoseMove().opposite();
+        _completedMoves.push(mov);
     }
 
     /** Make a jump if the move MOV is a jump. */
     void makeJump(Move mov) {
         while (mov.jumpTail() != null) {
-            set(mov.fromIndex(), EMPTY);
-            set(mov.jumpedIndex(), EMPTY);
+            put(mov.fromIndex(), EMPTY);
+            put(mov.jumpedIndex(), EMPTY);
             _backTrack[mov.jumpedIndex()] = '-';
             mov = mov.jumpTail();
         }
-        set(mov.fromIndex(), EMPTY);
-        set(mov.jumpedIndex(), EMPTY);
+        put(mov.fromIndex(), EMPTY);
+        put(mov.jumpedIndex(), EMPTY);
         _backTrack[mov.jumpedIndex()] = '-';
-        set(mov.toIndex(), whoseMove());
+        put(mov.toIndex(), whoseMove());
     }
 
     /** Undo the last move, if any. */
     void undo() {
+        Move prev = retractMove();
+        _gameOver = false;
+        publish();
+
+        setChanged();
+        notifyObservers(BoardChange.undone(prev));
+    }
+
+    /** Undo the last move, except for updating _gameOver and notifying
+     *  observers, and return it. */
+    private Move retractMove() {
         Move prev = _completedMoves.pop();
         char[] bt = _trackHistory.pop();
         _whoseMove = whoseMove().opposite();
 
-        set(prev.fromIndex(), whoseMove());
-        set(prev.toIndex(), EMPTY);
+        put(prev.fromIndex(), whoseMove());
+        put(prev.toIndex(), EMPTY);
 
         if (prev.isJump()) {
             undoJumps(prev);
         }
-        for (int i = 0; i < bt.length; i += 1) {
-            _backTrack[i] = bt[i];
-        }
-
-        setChanged();
-        notifyObservers();
+        System.arraycopy(bt, 0, _backTrack, 0, bt.length);
+        return prev;
     }
 
     /** Undo jumps if there were any jumps in the last move MOV. */
     void undoJumps(Move mov) {
-        set(mov.jumpedIndex(), whoseMove().opposite());
-        set(mov.toIndex(), EMPTY);
+        put(mov.jumpedIndex(), whoseMove().opposite());
+        put(mov.toIndex(), EMPTY);
         if (mov.jumpTail() != null) {
             undoJumps(mov.jumpTail());
         }
     }
 
+    /** Apply CHANGE, which was just made to BOARD, to me, assuming that
+     *  I was equal to BOARD before the change. */
+    private void follow(Board board, BoardChange change) {
+        switch (change.kind()) {
+        case MOVE:
+            applyMove(change.move());
+            break;
+        case UNDO:
+            retractMove();
+            break;
+        case SQUARE:
+            put(change.square(), change.piece());
+            break;
+        default:
+            internalCopy(board);
+            break;
+        }
+        _gameOver = board._gameOver;
+        publish();
+    }
+
+    /** Return the snapshot of my position published after my last
+     *  change.  May be called from any thread. */
+    BoardSnapshot snapshot() {
+        return _snapshot;
+    }
+
+    /** Publish a snapshot of my current position. */
+    private void publish() {
+        _snapshot = capture();
+    }
+
+    /** Return a snapshot of my current position. */
+    private BoardSnapshot capture() {
+        int white, black, noLeft, noRight;
+        white = black = noLeft = noRight = 0;
+        for (int k = 0; k < _board.length; k += 1) {
+            if (_board[k] == WHITE) {
+                white |= 1 << k;
+            } else if (_board[k] == BLACK) {
+                black |= 1 << k;
+            }
+            if (_backTrack[k] == 'l') {
+                noLeft |= 1 << k;
+            } else if (_backTrack[k] == 'r') {
+                noRight |= 1 << k;
+            }
+        }
+        return new BoardSnapshot(white, black, noLeft, noRight, _whoseMove,
+                                 _completedMoves.isEmpty() ? null
+                                 : _completedMoves.peek(),
+                                 _completedMoves.size(), _gameOver);
+    }
+
+    /** Return the 64-bit key of my current position (see
+     *  CompactBoard.key()). */
+    long key() {
+        return capture().key();
+    }
+
     /** Returns the board of the current game. */
     public PieceColor[] getBoard() {
         return _board;
@@ -493,6 +645,14 @@ class Board extends Observable {
     /** Set true when game ends. */
     private boolean _gameOver;
 
+    /** The moves generated for recent positions, or null. */
+    private MoveCache _moveCache;
+
+    /** The latest snapshot of my position.  Replaced (never modified)
+     *  after each change, so that readers on other threads need no
+     *  lock. */
+    private volatile BoardSnapshot _snapshot;
+
     /** Convenience value giving values of pieces at each ordinal position. */
     static final PieceColor[] PIECE_VALUES = PieceColor.values();
 
@@ -509,6 +669,16 @@ class Board extends Observable {
             Board.this.addObserver(this);
         }
 
+        @Override
+        MoveCache moveCache() {
+            return Board.this.moveCache();
+        }
+
+        @Override
+        void setMoveCache(MoveCache cache) {
+            assert false;
+        }
+
         @Override
         void copy(Board b) {
             assert false;
@@ -532,9 +702,11 @@ class Board extends Observable {
 
         @Override
         public void update(Observable obs, Object arg) {
-            super.copy((Board) obs);
+            BoardChange change = arg instanceof BoardChange
+                ? (BoardChange) arg : BoardChange.RESET;
+            super.follow((Board) obs, change);
             setChanged();
-            notifyObservers(arg);
+            notifyObservers(change);
         }
     }
 }
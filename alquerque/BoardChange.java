@@ -0,0 +1,92 @@
+package qirkat;
+
+/** A description of one change to a Board, passed as the argument of
+ *  its notifications to observers.  A change is a move made, a move
+ *  undone, a single square set, or a reset (by clear, setPieces or copy)
+ *  after which observers should reread the whole board.
+ *  @author Mudabbir Khan
+ */
+class BoardChange {
+
+    /** The kinds of change. */
+    static enum Kind {
+        /** A move was made. */
+        MOVE,
+        /** The last move was undone. */
+        UNDO,
+        /** The contents of one square were set. */
+        SQUARE,
+        /** Any part of the board may have changed. */
+        RESET;
+    }
+
+    /** The change that resets the board. */
+    static final BoardChange RESET = new BoardChange(Kind.RESET, null, -1,
+                                                     null);
+
+    /** Return the change that makes MOVE. */
+    static BoardChange moved(Move move) {
+        return new BoardChange(Kind.MOVE, move, -1, null);
+    }
+
+    /** Return the change that undoes MOVE, the last move made. */
+    static BoardChange undone(Move move) {
+        return new BoardChange(Kind.UNDO, move, -1, null);
+    }
+
+    /** Return the change that sets the square at linearized index K to
+     *  PIECE. */
+    static BoardChange square(int k, PieceColor piece) {
+        return new BoardChange(Kind.SQUARE, null, k, piece);
+    }
+
+    /** A change of kind KIND involving MOVE, or square K and PIECE. */
+    private BoardChange(Kind kind, Move move, int k, PieceColor piece) {
+        _kind = kind;
+        _move = move;
+        _square = k;
+        _piece = piece;
+    }
+
+    /** Return my kind. */
+    Kind kind() {
+        return _kind;
+    }
+
+    /** Return the move made or undone (null if neither). */
+    Move move() {
+        return _move;
+    }
+
+    /** Return the linearized index of the square set (-1 if none). */
+    int square() {
+        return _square;
+    }
+
+    /** Return the new contents of the square set (null if none). */
+    PieceColor piece() {
+        return _piece;
+    }
+
+    @Override
+    public String toString() {
+        switch (_kind) {
+        case MOVE: case UNDO:
+            return _kind.toString().toLowerCase() + " " + _move;
+        case SQUARE:
+            return String.format("square %c%c %s", Move.col(_square),
+                                 Move.row(_square), _piece);
+        default:
+            return "reset";
+        }
+    }
+
+    /** The kind of change. */
+    private final Kind _kind;
+    /** The move made or undone, or null. */
+    private final Move _move;
+    /** The square set, or -1. */
+    private final int _square;
+    /** The new contents of _square, or null. */
+    private final PieceColor _piece;
+}
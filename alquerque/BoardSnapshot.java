@@ -0,0 +1,134 @@
+package qirkat;
+
+import static qirkat.PieceColor.*;
+import static qirkat.Move.*;
+
+/** An immutable record of a Board's position at one moment: its pieces
+ *  and horizontal-move restrictions (as bit masks, as in CompactBoard),
+ *  the side to move, the last move made, and the number of moves made.
+ *  A Board publishes a new snapshot after each change, so that other
+ *  threads (such as the GUI's) may examine a consistent position without
+ *  locking the Board or delaying the thread that changes it.
+ *  @author Mudabbir Khan
+ */
+final class BoardSnapshot {
+
+    /** A snapshot of a position with pieces WHITE and BLACK, horizontal
+     *  restrictions NOLEFT and NORIGHT (as masks), WHOSEMOVE to move,
+     *  LASTMOVE (or null) the last move made, PLY moves made, and the
+     *  game over iff GAMEOVER. */
+    BoardSnapshot(int white, int black, int noLeft, int noRight,
+                  PieceColor whoseMove, Move lastMove, int ply,
+                  boolean gameOver) {
+        _white = white;
+        _black = black;
+        _noLeft = noLeft;
+        _noRight = noRight;
+        _whoseMove = whoseMove;
+        _lastMove = lastMove;
+        _ply = ply;
+        _gameOver = gameOver;
+    }
+
+    /** Return the contents of the square at linearized index K. */
+    PieceColor get(int k) {
+        assert validSquare(k);
+        if ((_white & (1 << k)) != 0) {
+            return WHITE;
+        } else if ((_black & (1 << k)) != 0) {
+            return BLACK;
+        } else {
+            return EMPTY;
+        }
+    }
+
+    /** Return the contents of square C R, where 'a' <= C <= 'e', and
+     *  '1' <= R <= '5'. */
+    PieceColor get(char c, char r) {
+        return get(index(c, r));
+    }
+
+    /** Return the horizontal-move restriction on the square at
+     *  linearized index K, as for Board.backTrack. */
+    char backTrack(int k) {
+        if ((_noLeft & (1 << k)) != 0) {
+            return 'l';
+        } else if ((_noRight & (1 << k)) != 0) {
+            return 'r';
+        } else {
+            return '-';
+        }
+    }
+
+    /** Return the mask of white pieces. */
+    int whiteMask() {
+        return _white;
+    }
+
+    /** Return the mask of black pieces. */
+    int blackMask() {
+        return _black;
+    }
+
+    /** Return the mask of pieces that may not next move left. */
+    int noLeftMask() {
+        return _noLeft;
+    }
+
+    /** Return the mask of pieces that may not next move right. */
+    int noRightMask() {
+        return _noRight;
+    }
+
+    /** Return the side to move. */
+    PieceColor whoseMove() {
+        return _whoseMove;
+    }
+
+    /** Return the last move made, or null if none. */
+    Move lastMove() {
+        return _lastMove;
+    }
+
+    /** Return the number of moves made. */
+    int ply() {
+        return _ply;
+    }
+
+    /** Return true iff the game was over. */
+    boolean gameOver() {
+        return _gameOver;
+    }
+
+    /** Return the 64-bit key of my position, as for CompactBoard.key(),
+     *  which does not depend on my last move, ply, or gameOver(). */
+    long key() {
+        return CompactBoard.key(_white, _black, _noLeft, _noRight,
+                                _whoseMove);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (char r = '5'; r >= '1'; r -= 1) {
+            out.append(" ");
+            for (char c = 'a'; c <= 'e'; c += 1) {
+                out.append(" ").append(get(c, r).shortName());
+            }
+            out.append("\n");
+        }
+        return out.toString();
+    }
+
+    /** Masks of the white and black pieces, and of the pieces that may
+     *  not next move left or right. */
+    private final int _white, _black, _noLeft, _noRight;
+    /** The side to move. */
+    private final PieceColor _whoseMove;
+    /** The last move made, or null. */
+    private final Move _lastMove;
+    /** Number of moves made. */
+    private final int _ply;
+    /** True iff the game was over. */
+    private final boolean _gameOver;
+}
@@ -78,4 +78,64 @@ public class BoardTest {
         b.getJumps(movies, 12);
         assertEquals(movies.size(), 3);
     }
+
+    @Test
+    public void testConstantView() {
+        Board b0 = new Board();
+        Board view = b0.constantView();
+        ArrayList<BoardChange> changes = new ArrayList<>();
+        view.addObserver((obs, arg) -> changes.add((BoardChange) arg));
+        makeMoves(b0, GAME1);
+        assertEquals(b0, view);
+        assertEquals(GAME1.length, view.getMoveHistory().size());
+        assertEquals(GAME1.length, changes.size());
+        assertEquals(BoardChange.Kind.MOVE, changes.get(0).kind());
+        assertEquals(Move.parseMove(GAME1[0]), changes.get(0).move());
+        b0.undo();
+        assertEquals(b0, view);
+        assertEquals(GAME1.length - 1, view.getMoveHistory().size());
+        assertEquals(BoardChange.Kind.UNDO, changes.get(GAME1.length).kind());
+        b0.set(0, PieceColor.EMPTY);
+        assertEquals(PieceColor.EMPTY, view.get(0));
+        b0.clear();
+        assertEquals(INIT_BOARD, view.toString());
+        assertEquals(0, view.getMoveHistory().size());
+        assertEquals(BoardChange.RESET, changes.get(changes.size() - 1));
+    }
+
+    @Test
+    public void testUndoRestoresRestrictions() {
+        Board b0 = new Board();
+        b0.setPieces("- - - - -  - - w - -  - - - - -  - - b - -  - - - - -",
+                     PieceColor.WHITE);
+        b0.makeMove(Move.parseMove("c2-b2"));
+        b0.makeMove(Move.parseMove("c4-d4"));
+        assertEquals('r', b0.backTrack(Move.index('b', '2')));
+        b0.makeMove(Move.parseMove("b2-b3"));
+        b0.undo();
+        assertEquals('r', b0.backTrack(Move.index('b', '2')));
+        assertFalse(b0.legalMove(Move.parseMove("b2-c2")));
+    }
+
+    @Test
+    public void testSnapshot() {
+        Board b0 = new Board();
+        BoardSnapshot start = b0.snapshot();
+        assertEquals(0, start.ply());
+        assertNull(start.lastMove());
+        Move mov = Move.parseMove("c2-c3");
+        b0.makeMove(mov);
+        BoardSnapshot after = b0.snapshot();
+        assertEquals(1, after.ply());
+        assertEquals(mov, after.lastMove());
+        assertEquals(PieceColor.BLACK, after.whoseMove());
+        for (int k = 0; k <= Move.MAX_INDEX; k += 1) {
+            assertEquals(b0.get(k), after.get(k));
+            assertEquals(b0.backTrack(k), after.backTrack(k));
+        }
+        assertEquals(PieceColor.EMPTY, start.get('c', '3'));
+        b0.undo();
+        assertEquals(start.toString(), b0.snapshot().toString());
+        assertEquals(PieceColor.WHITE, after.get('c', '3'));
+    }
 }
@@ -5,11 +5,16 @@ import ucb.gui2.Pad;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.BasicStroke;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.util.Observer;
 import java.util.Observable;
 import java.awt.geom.Line2D;
 
 import java.awt.event.MouseEvent;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.Timer;
 
 import static qirkat.PieceColor.*;
 
@@ -25,6 +30,9 @@ class BoardWidget extends Pad implements Observer {
     static final int SIDE = Move.SIDE;
     /** Radius of circle representing a piece. */
     static final int PIECE_RADIUS = 15;
+    /** Least time between repaints of changes to the model
+     *  (milliseconds). */
+    static final int FRAME = 16;
 
     /** Color of white pieces. */
     private static final Color WHITE_COLOR = Color.WHITE;
@@ -55,6 +63,7 @@ class BoardWidget extends Pad implements Observer {
         _model.addObserver(this);
         _dim = SQDIM * SIDE;
         setPreferredSize(_dim, _dim);
+        _frame.setRepeats(false);
         _col = 0;
         _row = 0;
         _set = false;
@@ -68,9 +77,29 @@ class BoardWidget extends Pad implements Observer {
     }
 
     @Override
-    public synchronized void paintComponent(Graphics2D g) {
+    public void paintComponent(Graphics2D g) {
+        if (_background == null || _background.getWidth() != _dim) {
+            _background = drawBoard(_dim);
+        }
+        g.drawImage(_background, 0, 0, null);
+
+        Rectangle clip = g.getClipBounds();
+        BoardSnapshot position = _model.snapshot();
+        for (int k = 0; k <= Move.MAX_INDEX; k += 1) {
+            if (clip == null || clip.intersects(squareBounds(k))) {
+                render(g, position.get(k), k);
+            }
+        }
+    }
+
+    /** Return an image of the empty board (its background and lines),
+     *  DIM pixels on a side. */
+    private static BufferedImage drawBoard(int dim) {
+        BufferedImage result =
+            new BufferedImage(dim, dim, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = result.createGraphics();
         g.setColor(Color.ORANGE);
-        g.fillRect(0, 0, _dim, _dim);
+        g.fillRect(0, 0, dim, dim);
 
         for (int i = 0; i <= SIDE - 2; i += 2) {
             g.setColor(LINE_COLOR);
@@ -99,12 +128,15 @@ class BoardWidget extends Pad implements Observer {
             g.draw(new Line2D.Double(SQDIM / 2 + i * SQDIM, SQDIM / 2,
                     SQDIM / 2 + i * SQDIM, SIDE * SQDIM - SQDIM / 2));
         }
+        g.dispose();
+        return result;
+    }
 
-        int pIndex = 0;
-        for (PieceColor p : _model.getBoard()) {
-            render(g, p, pIndex);
-            pIndex += 1;
-        }
+    /** Return the area occupied by the square at linearized index K. */
+    private static Rectangle squareBounds(int k) {
+        return new Rectangle((k % SIDE) * SQDIM,
+                             SQDIM * SIDE - (k / SIDE + 1) * SQDIM,
+                             SQDIM, SQDIM);
     }
 
     /** Comment G to P to INDEX. */
@@ -144,9 +176,11 @@ class BoardWidget extends Pad implements Observer {
                 && mouseRow >= '1' && mouseRow <= '5') {
 
                 if (_set) {
-                    if (_model.get(mouseCol, mouseRow) == WHITE) {
+                    PieceColor piece =
+                        _model.snapshot().get(mouseCol, mouseRow);
+                    if (piece == WHITE) {
                         _model.set(Move.index(mouseCol, mouseRow), BLACK);
-                    } else if (_model.get(mouseCol, mouseRow) == BLACK) {
+                    } else if (piece == BLACK) {
                         _model.set(Move.index(mouseCol, mouseRow), EMPTY);
                     } else {
                         _model.set(Move.index(mouseCol, mouseRow), WHITE);
@@ -174,9 +208,41 @@ class BoardWidget extends Pad implements Observer {
     }
 
 
+    /** Note a change to the model described by ARG (a BoardChange, or
+     *  anything else if the whole board may need repainting).  Changes
+     *  are collected and repainted together, at most once per FRAME
+     *  milliseconds, and only on the squares they affect.  May be called
+     *  from any thread; never waits for painting. */
     @Override
-    public synchronized void update(Observable model, Object arg) {
-        repaint();
+    public void update(Observable model, Object arg) {
+        BoardSnapshot now = _model.snapshot();
+        BoardSnapshot before = _shown.getAndSet(now);
+        int changed;
+        if (arg instanceof BoardChange && before != null) {
+            changed = (before.whiteMask() ^ now.whiteMask())
+                | (before.blackMask() ^ now.blackMask());
+        } else {
+            changed = CompactBoard.ALL;
+        }
+        if (changed != 0 && _dirty.getAndAccumulate(changed, (x, y) -> x | y)
+            == 0) {
+            _frame.start();
+        }
+    }
+
+    /** Repaint the squares changed since the last frame. */
+    private void paintFrame() {
+        int dirty = _dirty.getAndSet(0);
+        if (dirty == CompactBoard.ALL) {
+            repaint();
+            return;
+        }
+        for (int k = 0; dirty != 0; k += 1, dirty >>>= 1) {
+            if ((dirty & 1) != 0) {
+                Rectangle r = squareBounds(k);
+                repaint(0, r.x, r.y, r.width, r.height);
+            }
+        }
     }
 
     /** Col for mouse click. */
@@ -191,6 +257,19 @@ class BoardWidget extends Pad implements Observer {
     /** Dimension of current drawing surface in pixels. */
     private int _dim;
 
+    /** Image of the empty board, or null if not yet drawn. */
+    private BufferedImage _background;
+
+    /** The position as of the last change noted by update, or null. */
+    private final AtomicReference<BoardSnapshot> _shown =
+        new AtomicReference<>();
+
+    /** Mask of the squares changed since the last frame was painted. */
+    private final AtomicInteger _dirty = new AtomicInteger();
+
+    /** Timer that paints the next frame. */
+    private final Timer _frame = new Timer(FRAME, e -> paintFrame());
+
     /** A partial Move indicating selected squares. */
     private Move _selectedMove;
 
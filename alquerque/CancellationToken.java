@@ -0,0 +1,50 @@
+package qirkat;
+
+import java.util.ArrayList;
+
+/** A request, which any thread may make, that some piece of work (such
+ *  as a search for a move) be abandoned.  The work either checks
+ *  isCancelled() or registers actions with onCancel() that stop it.
+ *  @author Mudabbir Khan
+ */
+class CancellationToken {
+
+    /** Cancel me: run the actions registered with onCancel, if I was not
+     *  already cancelled. */
+    void cancel() {
+        ArrayList<Runnable> actions;
+        synchronized (this) {
+            if (_cancelled) {
+                return;
+            }
+            _cancelled = true;
+            actions = _actions;
+            _actions = null;
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    /** Return true iff I have been cancelled. */
+    synchronized boolean isCancelled() {
+        return _cancelled;
+    }
+
+    /** Run ACTION when I am cancelled (at once, on this thread, if I
+     *  already have been). */
+    void onCancel(Runnable action) {
+        synchronized (this) {
+            if (!_cancelled) {
+                _actions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /** True once I have been cancelled. */
+    private boolean _cancelled;
+    /** Actions to run on cancellation, or null once they have run. */
+    private ArrayList<Runnable> _actions = new ArrayList<>();
+}
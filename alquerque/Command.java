@@ -1,5 +1,6 @@
 package qirkat;
 
+import java.util.HashMap;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
@@ -15,7 +16,7 @@ class Command {
      *  programmer writes. */
     static enum Type {
         /* Start-up state only. */
-        AUTO("(?i)auto\\s+(white|black)"),
+        AUTO("(?i)auto\\s+(white|black)(?:\\s+(ai|mcts))?"),
         MANUAL("(?i)manual\\s+(white|black)"),
         SEED("seed\\s+(\\d+)"),
         START,
@@ -24,7 +25,11 @@ class Command {
         PIECEMOVE("([a-e][1-5](?:-[a-e][1-5])+)"),
         /* Valid at any time. */
         LOAD("load\\s+(\\S+)"),
-        QUIT, CLEAR, DUMP, HELP, UNDO, PAUSE,
+        DEPTH("depth\\s+(\\d+)"),
+        MOVETIME("movetime\\s+(\\d+)"),
+        THREADS("threads\\s+(\\d+)"),
+        HASH("hash\\s+(\\d+)"),
+        QUIT, CLEAR, DUMP, HELP, UNDO, PAUSE, STATS,
         /* Special "commands" internally generated. */
         /** Syntax error in command. */
         ERROR(".*"),
@@ -37,16 +42,26 @@ class Command {
          *  the pattern capture the operands (if any). */
         Type(String pattern) {
             _pattern = Pattern.compile(pattern + "$");
+            int start = pattern.startsWith("(?i)") ? 4 : 0, end = start;
+            while (end < pattern.length()
+                   && Character.isLowerCase(pattern.charAt(end))) {
+                end += 1;
+            }
+            _keyword = end > start ? pattern.substring(start, end) : null;
         }
 
         /** A Type whose pattern is the lower-case version of its name. */
         Type() {
             _pattern = Pattern.compile(this.toString().toLowerCase() + "$");
+            _keyword = this.toString().toLowerCase();
         }
 
         /** The Pattern descrbing syntactically correct versions of this
          *  type of command. */
         private final Pattern _pattern;
+        /** The word that begins every command of this type, or null if
+         *  there is none. */
+        private final String _keyword;
 
     }
 
@@ -66,23 +81,101 @@ class Command {
         return _operands;
     }
 
-    /** Parse COMMAND, returning the command and its operands. */
+    /** Return the text of this Command, which parseCommand converts
+     *  back into an equivalent Command.  ERROR and EOF have no text, and
+     *  give "?" and "quit". */
+    @Override
+    public String toString() {
+        switch (_type) {
+        case PIECEMOVE:
+            return _operands[0];
+        case ERROR:
+            return "?";
+        case EOF:
+            return "quit";
+        default:
+            StringBuilder result = new StringBuilder(_type._keyword);
+            for (String operand : _operands) {
+                result.append(' ').append(operand);
+            }
+            return result.toString();
+        }
+    }
+
+    /** Parse COMMAND, returning the command and its operands.  Optional
+     *  operands that are absent at the end of COMMAND are omitted.
+     *
+     *  Rather than trying every type's pattern in turn, this classifies
+     *  COMMAND by its start: a square designation means a move, which
+     *  is checked by hand, and otherwise the first word selects the only
+     *  type whose pattern could match.  The result is the same as that
+     *  of matching the patterns in order. */
     static Command parseCommand(String command) {
         if (command == null) {
             return new Command(Type.EOF);
         }
         command = command.trim();
+        if (command.length() >= 2 && isSquare(command, 0)) {
+            return isMove(command) ? new Command(Type.PIECEMOVE, command)
+                : new Command(Type.ERROR);
+        }
+        int end = 0;
+        while (end < command.length()
+               && !Character.isWhitespace(command.charAt(end))) {
+            end += 1;
+        }
+        Type type = KEYWORDS.get(command.substring(0, end).toLowerCase());
+        if (type == null) {
+            return new Command(Type.ERROR);
+        }
+        Matcher mat = type._pattern.matcher(command);
+        if (!mat.matches()) {
+            return new Command(Type.ERROR);
+        }
+        int numOperands = mat.groupCount();
+        while (numOperands > 0 && mat.group(numOperands) == null) {
+            numOperands -= 1;
+        }
+        String[] operands = new String [numOperands];
+        for (int i = 1; i <= operands.length; i += 1) {
+            operands[i - 1] = mat.group(i);
+        }
+        return new Command(type, operands);
+    }
+
+    /** Return true iff COMMAND has a square designation at K. */
+    private static boolean isSquare(String command, int k) {
+        char c = command.charAt(k), r = command.charAt(k + 1);
+        return 'a' <= c && c <= 'e' && '1' <= r && r <= '5';
+    }
+
+    /** Return true iff COMMAND is entirely two or more square
+     *  designations separated by hyphens. */
+    private static boolean isMove(String command) {
+        int len = command.length();
+        if (len < 5 || (len - 2) % 3 != 0) {
+            return false;
+        }
+        for (int k = 0; k < len; k += 3) {
+            if (!isSquare(command, k)
+                || (k + 2 < len && command.charAt(k + 2) != '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Maps (lower-case) first words of commands to their types.  The
+     *  internally generated types, ERROR and EOF, cannot be typed. */
+    private static final HashMap<String, Type> KEYWORDS = new HashMap<>();
+
+    static {
         for (Type type : Type.values()) {
-            Matcher mat = type._pattern.matcher(command);
-            if (mat.matches()) {
-                String[] operands = new String [mat.groupCount()];
-                for (int i = 1; i <= operands.length; i += 1) {
-                    operands[i - 1] = mat.group(i);
-                }
-                return new Command(type, operands);
+            if (type._keyword != null && type != Type.ERROR
+                && type != Type.EOF) {
+                KEYWORDS.put(type._keyword, type);
             }
         }
-        throw new Error("Internal failure: error command did not match.");
     }
 
     /** The command name. */
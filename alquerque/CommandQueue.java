@@ -0,0 +1,70 @@
+package qirkat;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/** Provides command input from a queue of commands, already parsed,
+ *  posted by other threads (such as a GUI's).  Posting never blocks,
+ *  and the commands need not pass through text.
+ *  @author Mudabbir Khan
+ */
+class CommandQueue implements CommandSource {
+
+    /** Add CMND to the end of my queue.  May be called from any
+     *  thread. */
+    void post(Command cmnd) {
+        _queue.add(cmnd);
+    }
+
+    /** Parse LINE, a line of command text, and post the result, unless
+     *  LINE is blank or a comment.  May be called from any thread. */
+    void post(String line) {
+        line = CommandSource.stripComment(line);
+        if (line.length() > 0) {
+            post(Command.parseCommand(line));
+        }
+    }
+
+    /** Mark the end of my input: once the commands posted so far have
+     *  been read, I am exhausted. */
+    void close() {
+        post(END);
+    }
+
+    /** Return the next command posted, waiting for one if necessary, or
+     *  null if I am exhausted or this thread is interrupted while
+     *  waiting.  PROMPT is ignored. */
+    @Override
+    public Command getCommand(String prompt) {
+        if (_exhausted) {
+            return null;
+        }
+        try {
+            Command cmnd = _queue.take();
+            if (cmnd == END) {
+                _exhausted = true;
+                return null;
+            }
+            return cmnd;
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /** Return the text of the next command posted, as for getCommand,
+     *  or null if there is none. */
+    @Override
+    public String getLine(String prompt) {
+        Command cmnd = getCommand(prompt);
+        return cmnd == null ? null : cmnd.toString();
+    }
+
+    /** Marks the end of input in the queue. */
+    private static final Command END = new Command(Command.Type.EOF);
+
+    /** Commands posted and not yet read. */
+    private final BlockingQueue<Command> _queue = new LinkedBlockingQueue<>();
+    /** True once END has been read. */
+    private boolean _exhausted;
+}
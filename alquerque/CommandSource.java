@@ -12,4 +12,31 @@ interface CommandSource {
      *  PROMPT suggests a prompt string that might be used, if
      *  appropriate to the input method. */
     String getLine(String prompt);
+
+    /** Return the next command from my input, or null when input is
+     *  exhausted, using PROMPT as for getLine.  By default, parses the
+     *  next line from getLine that is not blank once comments are
+     *  removed. */
+    default Command getCommand(String prompt) {
+        while (true) {
+            String line = getLine(prompt);
+            if (line == null) {
+                return null;
+            }
+            line = stripComment(line);
+            if (line.length() > 0) {
+                return Command.parseCommand(line);
+            }
+        }
+    }
+
+    /** Return LINE without its comment (from '#' on, if any) and
+     *  leading and trailing whitespace. */
+    static String stripComment(String line) {
+        int comment = line.indexOf('#');
+        if (comment != -1) {
+            line = line.substring(0, comment);
+        }
+        return line.trim();
+    }
 }
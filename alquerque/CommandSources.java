@@ -18,10 +18,7 @@ class CommandSources implements CommandSource {
             String line;
             line = _inputs.peek().getLine(prompt);
             if (line != null) {
-                if (line.indexOf('#') != -1) {
-                    line = line.substring(0, line.indexOf('#'));
-                }
-                line = line.trim();
+                line = CommandSource.stripComment(line);
                 if (line.length() > 0) {
                     return line;
                 }
@@ -32,6 +29,21 @@ class CommandSources implements CommandSource {
         return null;
     }
 
+    /** Return the next command from the most recent input source that
+     *  is not exhausted, or null if all are.  PROMPT is as for
+     *  getLine. */
+    @Override
+    public Command getCommand(String prompt) {
+        while (!_inputs.isEmpty()) {
+            Command cmnd = _inputs.peek().getCommand(prompt);
+            if (cmnd != null) {
+                return cmnd;
+            }
+            _inputs.pop();
+        }
+        return null;
+    }
+
     /** Make SOURCE the latest input source from which subsequent input
      *  will be read. */
     void addSource(CommandSource source) {
@@ -31,6 +31,8 @@ public class CommandTest {
     @Test public void testAUTO() {
         check("auto white", AUTO, "white");
         check("auto black", AUTO, "black");
+        check("auto black mcts", AUTO, "black", "mcts");
+        check("auto white ai", AUTO, "white", "ai");
         checkError("auto green");
         checkError("auto");
         checkError("auto red foo");
@@ -66,6 +68,68 @@ public class CommandTest {
         checkError("h3-g3");
         checkError("a0-a1");
         checkError("a7-a8");
+        check("a3-a5-c3-e1", PIECEMOVE, "a3-a5-c3-e1");
+        checkError("a3");
+        checkError("a3-");
+        checkError("a3-a5-");
+        checkError("a3--a5");
+        checkError("A3-B3");
+    }
+
+    @Test public void testCase() {
+        check("AUTO White", AUTO, "White");
+        check("Set BLACK wwwwwwwwwwww-bbbbbbbbbbbb", SETBOARD, "BLACK",
+              "wwwwwwwwwwww-bbbbbbbbbbbb");
+        checkError("QUIT");
+        checkError("Seed 1");
+        checkError("Load file");
+    }
+
+    @Test public void testOther() {
+        check("  load  some/file  ", LOAD, "some/file");
+        check("set white bbbbb bbbbb bb-ww wwwww wwwww", SETBOARD, "white",
+              "bbbbb bbbbb bb-ww wwwww wwwww");
+        check("depth 7", DEPTH, "7");
+        check("movetime  250", MOVETIME, "250");
+        check("threads 4", THREADS, "4");
+        check("hash 256", HASH, "256");
+        checkError("depth");
+        checkError("hash -1");
+        check(null, EOF);
+        checkError("eof");
+        checkError("error");
+        checkError("");
+        checkError("startx");
+        checkError("frobnicate");
+        checkError("#");
+    }
+
+    @Test public void testToString() {
+        for (String text : new String[] {
+                "auto black mcts", "seed 142", "start", "c2-c3-c4",
+                "set white w w w w w b b b b b - - - - - w w w w w b b b b b",
+                "depth 7" }) {
+            Command c = Command.parseCommand(text);
+            Command back = Command.parseCommand(c.toString());
+            assertEquals(c.commandType(), back.commandType());
+            assertArrayEquals(c.operands(), back.operands());
+        }
+    }
+
+    @Test public void testQueue() {
+        CommandQueue queue = new CommandQueue();
+        CommandSources inputs = new CommandSources();
+        inputs.addSource(queue);
+        queue.post("clear  # new game");
+        queue.post("   ");
+        queue.post(new Command(AUTO, "white"));
+        queue.close();
+        assertEquals(CLEAR, inputs.getCommand("").commandType());
+        Command auto = inputs.getCommand("");
+        assertEquals(AUTO, auto.commandType());
+        assertArrayEquals(new String[] { "white" }, auto.operands());
+        assertNull(inputs.getCommand(""));
+        assertNull(queue.getCommand(""));
     }
 
 }
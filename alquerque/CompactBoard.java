@@ -0,0 +1,376 @@
+package qirkat;
+
+import static qirkat.PieceColor.*;
+import static qirkat.Move.*;
+
+/** A Qirkat position packed into a handful of bit masks, for code that
+ *  must examine very many positions without allocating (such as
+ *  playouts).  Bit K of each mask refers to the square with linearized
+ *  index K.
+ *
+ *  Moves on a CompactBoard are encoded as longs: bits 0-4 hold the
+ *  starting square, bits 5-9 the final square, bits 10-13 the number of
+ *  jumps (0 for a non-capturing move), and bits 16 and up hold the
+ *  direction of each step, three bits per step.  Use toMove to convert
+ *  one to a Move.
+ *  @author Mudabbir Khan
+ */
+class CompactBoard {
+
+    /** Maximum number of moves that generate will produce. */
+    static final int MAX_MOVES = 256;
+
+    /** Mask of all squares. */
+    static final int ALL = (1 << (MAX_INDEX + 1)) - 1;
+
+    /** Directions, as column and row offsets. */
+    private static final int[]
+        DCOL = { 1, -1, 0, 0, 1, -1, 1, -1 },
+        DROW = { 0, 0, 1, -1, 1, 1, -1, -1 };
+
+    /** Number of squares. */
+    private static final int SQUARES = MAX_INDEX + 1;
+    /** An odd constant with no pattern in its bits (2**64 / golden
+     *  ratio). */
+    private static final long GOLDEN = 0x9e3779b97f4a7c15L;
+
+    /** Indices into DCOL and DROW of the horizontal directions. */
+    private static final int EAST = 0, WEST = 1;
+
+    /** Forward directions for white (first row) and black (second
+     *  row): straight ahead, then the two diagonals. */
+    private static final int[][] FORWARD = { { 2, 4, 5 }, { 3, 6, 7 } };
+
+    /** STEP[k][d] is the square adjacent to square K in direction D,
+     *  or -1 if there is none (or it is not connected by a line).
+     *  JUMP[k][d] is similarly the square two steps away. */
+    private static final int[][]
+        STEP = new int[MAX_INDEX + 1][DCOL.length],
+        JUMP = new int[MAX_INDEX + 1][DCOL.length];
+
+    static {
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            for (int d = 0; d < DCOL.length; d += 1) {
+                STEP[k][d] = JUMP[k][d] = -1;
+                if (d > WEST + 2 && k % 2 != 0) {
+                    continue;
+                }
+                int c = k % SIDE + DCOL[d], r = k / SIDE + DROW[d];
+                if (onBoard(c, r)) {
+                    STEP[k][d] = r * SIDE + c;
+                }
+                c += DCOL[d];
+                r += DROW[d];
+                if (onBoard(c, r)) {
+                    JUMP[k][d] = r * SIDE + c;
+                }
+            }
+        }
+    }
+
+    /** A new board in the initial position. */
+    CompactBoard() {
+        set(new Board());
+    }
+
+    /** A copy of B. */
+    CompactBoard(CompactBoard b) {
+        copy(b);
+    }
+
+    /** Set me to the position on B. */
+    void set(Board b) {
+        _white = _black = _noLeft = _noRight = 0;
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            if (b.get(k) == WHITE) {
+                _white |= 1 << k;
+            } else if (b.get(k) == BLACK) {
+                _black |= 1 << k;
+            }
+            if (b.backTrack(k) == 'l') {
+                _noLeft |= 1 << k;
+            } else if (b.backTrack(k) == 'r') {
+                _noRight |= 1 << k;
+            }
+        }
+        _whoseMove = b.whoseMove();
+    }
+
+    /** Set me to the position with pieces WHITE and BLACK, horizontal
+     *  restrictions NOLEFT and NORIGHT (as masks), and WHOSEMOVE to
+     *  move. */
+    void set(int white, int black, int noLeft, int noRight,
+             PieceColor whoseMove) {
+        _white = white;
+        _black = black;
+        _noLeft = noLeft;
+        _noRight = noRight;
+        _whoseMove = whoseMove;
+    }
+
+    /** Copy B into me. */
+    void copy(CompactBoard b) {
+        set(b._white, b._black, b._noLeft, b._noRight, b._whoseMove);
+    }
+
+    /** Return the mask of white pieces. */
+    int whiteMask() {
+        return _white;
+    }
+
+    /** Return the mask of black pieces. */
+    int blackMask() {
+        return _black;
+    }
+
+    /** Return the mask of pieces that may not move left. */
+    int noLeftMask() {
+        return _noLeft;
+    }
+
+    /** Return the mask of pieces that may not move right. */
+    int noRightMask() {
+        return _noRight;
+    }
+
+    /** Return the color of the player who has the next move. */
+    PieceColor whoseMove() {
+        return _whoseMove;
+    }
+
+    /** Return the contents of the square at linearized index K. */
+    PieceColor get(int k) {
+        if ((_white & (1 << k)) != 0) {
+            return WHITE;
+        } else if ((_black & (1 << k)) != 0) {
+            return BLACK;
+        }
+        return EMPTY;
+    }
+
+    /** Return a 64-bit hash of my position (pieces, restrictions on
+     *  horizontal moves, and side to move).  Distinct positions have
+     *  equal keys with probability about 2**-64. */
+    long key() {
+        return key(_white, _black, _noLeft, _noRight, _whoseMove);
+    }
+
+    /** Return the key, as for key(), of the position with pieces WHITE
+     *  and BLACK, horizontal restrictions NOLEFT and NORIGHT (as masks),
+     *  and WHOSEMOVE to move. */
+    static long key(int white, int black, int noLeft, int noRight,
+                    PieceColor whoseMove) {
+        long pieces = white | ((long) black << SQUARES)
+            | (whoseMove == WHITE ? 1L << (2 * SQUARES) : 0);
+        long restrictions = noLeft | ((long) noRight << SQUARES);
+        return mix(pieces ^ mix(restrictions + GOLDEN));
+    }
+
+    /** Store all legal moves from the current position into MOVES,
+     *  starting at index 0, and return their number.  MOVES must have
+     *  room for MAX_MOVES moves; any beyond that are dropped. */
+    int generate(long[] moves) {
+        int own = _whoseMove == WHITE ? _white : _black,
+            opp = _whoseMove == WHITE ? _black : _white,
+            empty = ~(_white | _black) & ALL;
+        int n = 0;
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            if ((own & (1 << k)) != 0) {
+                n = addJumps(k, k, opp, empty | (1 << k), 0, 0, moves, n);
+            }
+        }
+        if (n > 0) {
+            return n;
+        }
+        int[] forward = FORWARD[_whoseMove == WHITE ? 0 : 1];
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            if ((own & (1 << k)) == 0) {
+                continue;
+            }
+            for (int d : forward) {
+                n = addStep(k, d, empty, moves, n);
+            }
+            boolean lastRow = _whoseMove == WHITE ? k >= SIDE * (SIDE - 1)
+                : k < SIDE;
+            if (!lastRow) {
+                if ((_noRight & (1 << k)) == 0) {
+                    n = addStep(k, EAST, empty, moves, n);
+                }
+                if ((_noLeft & (1 << k)) == 0) {
+                    n = addStep(k, WEST, empty, moves, n);
+                }
+            }
+        }
+        return n;
+    }
+
+    /** Return true iff the player to move has no legal move. */
+    boolean gameOver() {
+        int own = _whoseMove == WHITE ? _white : _black,
+            opp = _whoseMove == WHITE ? _black : _white,
+            empty = ~(_white | _black) & ALL;
+        int[] forward = FORWARD[_whoseMove == WHITE ? 0 : 1];
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            if ((own & (1 << k)) == 0) {
+                continue;
+            }
+            for (int d = 0; d < DCOL.length; d += 1) {
+                int over = STEP[k][d], to = JUMP[k][d];
+                if (to >= 0 && (opp & (1 << over)) != 0
+                    && (empty & (1 << to)) != 0) {
+                    return false;
+                }
+            }
+            for (int d : forward) {
+                if (STEP[k][d] >= 0 && (empty & (1 << STEP[k][d])) != 0) {
+                    return false;
+                }
+            }
+            boolean lastRow = _whoseMove == WHITE ? k >= SIDE * (SIDE - 1)
+                : k < SIDE;
+            if (!lastRow
+                && ((STEP[k][EAST] >= 0 && (_noRight & (1 << k)) == 0
+                     && (empty & (1 << STEP[k][EAST])) != 0)
+                    || (STEP[k][WEST] >= 0 && (_noLeft & (1 << k)) == 0
+                        && (empty & (1 << STEP[k][WEST])) != 0))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Make move MOV, which must have been produced by generate for the
+     *  current position. */
+    void makeMove(long mov) {
+        int from = from(mov), to = to(mov), n = jumps(mov);
+        int own = _whoseMove == WHITE ? _white : _black,
+            opp = _whoseMove == WHITE ? _black : _white;
+        int restrict = ~(1 << from);
+        if (n == 0) {
+            int d = direction(mov, 0);
+            if (d == WEST) {
+                _noRight |= 1 << to;
+            } else if (d == EAST) {
+                _noLeft |= 1 << to;
+            }
+        } else {
+            int sq = from;
+            for (int i = 0; i < n; i += 1) {
+                int d = direction(mov, i);
+                opp &= ~(1 << STEP[sq][d]);
+                restrict &= ~(1 << STEP[sq][d]);
+                sq = JUMP[sq][d];
+            }
+        }
+        own = (own & ~(1 << from)) | (1 << to);
+        _noLeft &= restrict;
+        _noRight &= restrict;
+        if (_whoseMove == WHITE) {
+            _white = own;
+            _black = opp;
+        } else {
+            _black = own;
+            _white = opp;
+        }
+        _whoseMove = _whoseMove.opposite();
+    }
+
+    /** Return the Move denoted by MOV. */
+    static Move toMove(long mov) {
+        int n = jumps(mov);
+        if (n == 0) {
+            return Move.move(from(mov), to(mov));
+        }
+        int[] squares = new int[n + 1];
+        squares[0] = from(mov);
+        for (int i = 0; i < n; i += 1) {
+            squares[i + 1] = JUMP[squares[i]][direction(mov, i)];
+        }
+        Move result = null;
+        for (int i = n - 1; i >= 0; i -= 1) {
+            result = Move.move(col(squares[i]), row(squares[i]),
+                               col(squares[i + 1]), row(squares[i + 1]),
+                               result);
+        }
+        return result;
+    }
+
+    /** Return the starting square of MOV. */
+    static int from(long mov) {
+        return (int) (mov & 0x1f);
+    }
+
+    /** Return the final square of MOV. */
+    static int to(long mov) {
+        return (int) ((mov >>> 5) & 0x1f);
+    }
+
+    /** Return the number of jumps in MOV (0 if it is not a jump). */
+    static int jumps(long mov) {
+        return (int) ((mov >>> 10) & 0xf);
+    }
+
+    /** Return the direction of step I of MOV. */
+    private static int direction(long mov, int i) {
+        return (int) ((mov >>> (16 + 3 * i)) & 7);
+    }
+
+    /** Add the non-capturing move from K in direction D, if possible,
+     *  to MOVES, which already contains N moves, given that EMPTY is the
+     *  mask of empty squares.  Return the new number of moves. */
+    private static int addStep(int k, int d, int empty, long[] moves,
+                               int n) {
+        int to = STEP[k][d];
+        if (to >= 0 && (empty & (1 << to)) != 0 && n < moves.length) {
+            moves[n] = k | (to << 5) | ((long) d << 16);
+            n += 1;
+        }
+        return n;
+    }
+
+    /** Add to MOVES, which already contains N moves, all complete jump
+     *  sequences that start at FROM, have reached SQ after STEPS jumps
+     *  recorded in PATH, and continue over pieces in OPP onto squares in
+     *  EMPTY.  Return the new number of moves. */
+    private static int addJumps(int from, int sq, int opp, int empty,
+                                long path, int steps, long[] moves, int n) {
+        boolean extended = false;
+        for (int d = 0; d < DCOL.length; d += 1) {
+            int over = STEP[sq][d], to = JUMP[sq][d];
+            if (to >= 0 && (opp & (1 << over)) != 0
+                && (empty & (1 << to)) != 0) {
+                extended = true;
+                n = addJumps(from, to, opp & ~(1 << over),
+                             (empty | (1 << over) | (1 << sq)) & ~(1 << to),
+                             path | ((long) d << (16 + 3 * steps)),
+                             steps + 1, moves, n);
+            }
+        }
+        if (!extended && steps > 0 && n < moves.length) {
+            moves[n] = from | (sq << 5) | ((long) steps << 10) | path;
+            n += 1;
+        }
+        return n;
+    }
+
+    /** Return a hash of X whose bits each depend on all bits of X (the
+     *  finalizer of SplitMix64). */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+
+    /** Return true iff column C, row R (both counting from 0) is on
+     *  the board. */
+    private static boolean onBoard(int c, int r) {
+        return 0 <= c && c < SIDE && 0 <= r && r < SIDE;
+    }
+
+    /** Masks of white and black pieces. */
+    private int _white, _black;
+    /** Masks of pieces forbidden to move left or right. */
+    private int _noLeft, _noRight;
+    /** Player that is on move. */
+    private PieceColor _whoseMove;
+}
@@ -0,0 +1,81 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+/** Tests of the CompactBoard class against Board.
+ *  @author Mudabbir Khan
+ */
+public class CompactBoardTest {
+
+    /** Return the legal moves on B, as sorted strings. */
+    private static TreeSet<String> moves(Board b) {
+        TreeSet<String> result = new TreeSet<>();
+        for (Move m : b.getMoves()) {
+            result.add(m.toString());
+        }
+        return result;
+    }
+
+    /** Return the legal moves on B, as sorted strings. */
+    private static TreeSet<String> moves(CompactBoard b) {
+        TreeSet<String> result = new TreeSet<>();
+        long[] buf = new long[CompactBoard.MAX_MOVES];
+        int n = b.generate(buf);
+        for (int i = 0; i < n; i += 1) {
+            result.add(CompactBoard.toMove(buf[i]).toString());
+        }
+        return result;
+    }
+
+    @Test
+    public void testInitialMoves() {
+        Board b = new Board();
+        CompactBoard c = new CompactBoard();
+        assertEquals(moves(b), moves(c));
+        assertEquals(b.whoseMove(), c.whoseMove());
+    }
+
+    @Test
+    public void testJumps() {
+        Board b = new Board();
+        b.setPieces("w - - b - \n"
+                + "- b - b b \n"
+                + "- - w - - \n"
+                + "- - b - - \n"
+                + "- b - - - \n", PieceColor.WHITE);
+        CompactBoard c = new CompactBoard();
+        c.set(b);
+        assertEquals(moves(b), moves(c));
+    }
+
+    @Test
+    public void testRandomGames() {
+        Random r = new Random(61);
+        for (int game = 0; game < 20; game += 1) {
+            Board b = new Board();
+            CompactBoard c = new CompactBoard();
+            long[] buf = new long[CompactBoard.MAX_MOVES];
+            while (!b.gameOver()) {
+                assertEquals(moves(b), moves(c));
+                assertFalse(c.gameOver());
+                int n = c.generate(buf);
+                long mov = buf[r.nextInt(n)];
+                b.makeMove(CompactBoard.toMove(mov));
+                c.makeMove(mov);
+                CompactBoard d = new CompactBoard();
+                d.set(b);
+                assertEquals(d.whiteMask(), c.whiteMask());
+                assertEquals(d.blackMask(), c.blackMask());
+                assertEquals(d.noLeftMask(), c.noLeftMask());
+                assertEquals(d.noRightMask(), c.noRightMask());
+            }
+            assertTrue(c.gameOver());
+            assertEquals(0, c.generate(buf));
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package qirkat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static qirkat.GameException.error;
+
+/** Generates training data by self-play: runs games between computer
+ *  players on all cores and records every position in which a player
+ *  moved, with the score its search gave that position and the final
+ *  result of the game, as PositionRecords in size-capped shard files.
+ *
+ *  Each thread plays whole games and writes its own shards, named
+ *  data-T-NNNNN.qpos for thread T.  Positions of a game are held in
+ *  per-thread arrays until the result is known, so recording does not
+ *  allocate.
+ *  @author Mudabbir Khan
+ */
+public class DataGen {
+
+    /** Default maximum size of a shard, in megabytes. */
+    static final int DEFAULT_SHARD_MB = 64;
+    /** Size of each thread's write buffer, in bytes. */
+    static final int BUFFER_BYTES = 1 << 20;
+
+    /** Generate data as described by ARGS:
+     *      [--games N] [--threads N] [--seed S] [--openings FILE]
+     *      [--out DIR] [--shard-mb N] [--max-plies N] [ENGINE]
+     *  where ENGINE (default "ai") is written as for EngineConfig.parse
+     *  and plays both sides. */
+    public static void main(String[] args) {
+        int games = 1000,
+            threads = Runtime.getRuntime().availableProcessors(),
+            shardMb = DEFAULT_SHARD_MB,
+            maxPlies = EngineGame.DEFAULT_MAX_PLIES;
+        long seed = 0;
+        String openings = null, out = ".", engine = "ai";
+        DataGen gen = null;
+        try {
+            for (int i = 0; i < args.length; i += 1) {
+                switch (args[i]) {
+                case "--games":
+                    games = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--openings":
+                    openings = args[++i];
+                    break;
+                case "--out":
+                    out = args[++i];
+                    break;
+                case "--shard-mb":
+                    shardMb = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-plies":
+                    maxPlies = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    engine = args[i];
+                    break;
+                }
+            }
+            if (games <= 0 || threads <= 0 || shardMb <= 0) {
+                usage();
+            }
+            Files.createDirectories(Paths.get(out));
+            gen = new DataGen(EngineConfig.parse(engine),
+                              Tournament.readOpenings(openings), seed,
+                              maxPlies, Paths.get(out),
+                              (long) shardMb << 20);
+        } catch (IllegalArgumentException
+                 | ArrayIndexOutOfBoundsException excp) {
+            usage();
+        } catch (GameException | IOException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        }
+        try {
+            gen.run(games, threads);
+        } catch (GameException | IOException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        } catch (RuntimeException excp) {
+            System.err.println("game generation failed: " + excp);
+            System.exit(1);
+        }
+    }
+
+    /** Give usage message and exit. */
+    static void usage() {
+        System.err.println("Usage: java qirkat.DataGen [--games N]"
+                           + " [--threads N] [--seed S] [--openings FILE]"
+                           + " [--out DIR] [--shard-mb N] [--max-plies N]"
+                           + " [ENGINE]");
+        System.exit(1);
+    }
+
+    /** A generator in which ENGINE plays both sides, starting from
+     *  OPENINGS in rotation (the initial position if empty), seeding game
+     *  K with SEED + K and drawing after MAXPLIES plies.  It writes
+     *  shards of at most SHARDBYTES bytes into DIR. */
+    DataGen(EngineConfig engine, List<Command> openings, long seed,
+            int maxPlies, Path dir, long shardBytes) {
+        _engine = engine;
+        _openings = openings;
+        _seed = seed;
+        _maxPlies = maxPlies;
+        _dir = dir;
+        _shardBytes = shardBytes;
+    }
+
+    /** Play GAMES games on THREADS threads, and report totals on the
+     *  standard output.  If a thread fails, throw the exception that
+     *  stopped it once all have finished. */
+    void run(int games, int threads) throws IOException {
+        long start = System.nanoTime();
+        Worker[] workers = new Worker[threads];
+        Thread[] running = new Thread[threads];
+        for (int t = 0; t < threads; t += 1) {
+            workers[t] = new Worker(t, games);
+            running[t] = new Thread(workers[t], "datagen-" + t);
+            running[t].start();
+        }
+        long records = 0;
+        int shards = 0, finished = 0;
+        for (int t = 0; t < threads; t += 1) {
+            try {
+                running[t].join();
+            } catch (InterruptedException excp) {
+                throw new IllegalStateException(excp);
+            }
+        }
+        for (Worker worker : workers) {
+            Exception failure = worker.failure();
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+            records += worker.records();
+            shards += worker.shards();
+            finished += worker.games();
+        }
+        double hours = (System.nanoTime() - start) / 3.6e12;
+        System.out.printf("%d games, %d positions in %d shards"
+                          + " (%.0f positions/hour)%n", finished, records,
+                          shards, records / Math.max(hours, 1e-12));
+    }
+
+    /** One thread's game loop and recording buffers. */
+    private class Worker implements Runnable {
+
+        /** A worker numbered ID that plays games until TOTAL have been
+         *  started by all workers. */
+        Worker(int id, int total) {
+            _total = total;
+            _writer = new ShardWriter(_dir, "data-" + id, _shardBytes,
+                                      BUFFER_BYTES);
+        }
+
+        @Override
+        public void run() {
+            try (ShardWriter writer = _writer) {
+                int k;
+                while ((k = _nextGame.getAndIncrement()) < _total) {
+                    _count = 0;
+                    Command opening = _openings.isEmpty() ? null
+                        : _openings.get(k % _openings.size());
+                    Recorder game = new Recorder(opening, _seed + k);
+                    int result = PositionRecord.resultCode(game.play());
+                    for (int i = 0; i < _count; i += 1) {
+                        writer.add(_white[i], _black[i], _noLeft[i],
+                                   _noRight[i], _side[i], _score[i], i,
+                                   result);
+                    }
+                    _games += 1;
+                }
+            } catch (IOException | RuntimeException excp) {
+                _failure = excp;
+            }
+        }
+
+        /** Return the exception (an IOException or RuntimeException)
+         *  that stopped me, or null. */
+        Exception failure() {
+            return _failure;
+        }
+
+        /** Return the number of games I finished. */
+        int games() {
+            return _games;
+        }
+
+        /** Return the number of records I wrote. */
+        long records() {
+            return _writer.records();
+        }
+
+        /** Return the number of shards I created. */
+        int shards() {
+            return _writer.shards();
+        }
+
+        /** A game that saves its positions in my arrays. */
+        private class Recorder extends EngineGame {
+            /** A game from OPENING seeded with SEED. */
+            Recorder(Command opening, long seed) {
+                super(_engine, _engine, opening, seed, _maxPlies);
+            }
+
+            @Override
+            void recordPosition(Board board, Player player) {
+                _pos.set(board);
+                _white[_count] = _pos.whiteMask();
+                _black[_count] = _pos.blackMask();
+                _noLeft[_count] = _pos.noLeftMask();
+                _noRight[_count] = _pos.noRightMask();
+                _side[_count] = _pos.whoseMove();
+                _score[_count] =
+                    player instanceof AI ? ((AI) player).lastScore() : 0;
+                _count += 1;
+            }
+        }
+
+        /** Number of games to play in all. */
+        private final int _total;
+        /** Destination of my records. */
+        private final ShardWriter _writer;
+        /** Scratch position. */
+        private final CompactBoard _pos = new CompactBoard();
+        /** Positions of the current game. */
+        private final int[]
+            _white = new int[_maxPlies], _black = new int[_maxPlies],
+            _noLeft = new int[_maxPlies], _noRight = new int[_maxPlies],
+            _score = new int[_maxPlies];
+        /** Side to move in each position of the current game. */
+        private final PieceColor[] _side = new PieceColor[_maxPlies];
+        /** Number of positions in the current game. */
+        private int _count;
+        /** Number of games I finished. */
+        private int _games;
+        /** Error that stopped me, if any. */
+        private Exception _failure;
+    }
+
+    /** Engine playing both sides. */
+    private final EngineConfig _engine;
+    /** Openings, used in rotation. */
+    private final List<Command> _openings;
+    /** Seed of the first game. */
+    private final long _seed;
+    /** Ply limit per game. */
+    private final int _maxPlies;
+    /** Directory receiving the shards. */
+    private final Path _dir;
+    /** Maximum shard size in bytes. */
+    private final long _shardBytes;
+    /** Number of the next game to be started. */
+    private final AtomicInteger _nextGame = new AtomicInteger();
+}
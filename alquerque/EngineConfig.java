@@ -0,0 +1,129 @@
+package qirkat;
+
+import static qirkat.GameException.error;
+
+/** The settings of a computer player: which engine it uses and how hard
+ *  that engine searches.  A configuration is written as an engine name
+ *  optionally followed by a colon and comma-separated NAME=VALUE
+ *  settings, for example "ai", "ai:depth=4,weights=tuned.txt" or
+ *  "mcts:playouts=20000,threads=4".
+ *  @author Mudabbir Khan
+ */
+class EngineConfig {
+
+    /** The available engines. */
+    static enum Engine {
+        /** Alpha-beta search (class AI). */
+        AI,
+        /** Monte Carlo tree search (class MCTS). */
+        MCTS;
+    }
+
+    /** A configuration for the default alpha-beta AI. */
+    EngineConfig() {
+        this(Engine.AI);
+    }
+
+    /** A configuration for ENGINE with its default settings. */
+    EngineConfig(Engine engine) {
+        _engine = engine;
+        _depth = AI.MAX_DEPTH;
+        _playouts = MCTS.DEFAULT_PLAYOUTS;
+        _threads = MCTS.DEFAULT_THREADS;
+    }
+
+    /** Return the configuration denoted by SPEC. */
+    static EngineConfig parse(String spec) {
+        String[] parts = spec.trim().split(":", 2);
+        EngineConfig result;
+        try {
+            result = new EngineConfig(Engine.valueOf(parts[0].toUpperCase()));
+        } catch (IllegalArgumentException excp) {
+            throw error("unknown engine: %s", parts[0]);
+        }
+        if (parts.length > 1) {
+            for (String setting : parts[1].split(",")) {
+                String[] nameValue = setting.split("=", 2);
+                if (nameValue.length != 2) {
+                    throw error("bad engine setting: %s", setting);
+                }
+                result.set(nameValue[0].trim(), nameValue[1].trim());
+            }
+        }
+        return result;
+    }
+
+    /** Set the setting NAME to VALUE. */
+    void set(String name, String value) {
+        if (name.equalsIgnoreCase("weights")) {
+            _weights = Weights.load(value);
+            _weightsFile = value;
+            return;
+        }
+        int val;
+        try {
+            val = Integer.parseInt(value);
+        } catch (NumberFormatException excp) {
+            throw error("bad value for %s: %s", name, value);
+        }
+        if (val <= 0) {
+            throw error("bad value for %s: %s", name, value);
+        }
+        switch (name.toLowerCase()) {
+        case "depth":
+            _depth = val;
+            break;
+        case "playouts":
+            _playouts = val;
+            break;
+        case "threads":
+            _threads = val;
+            break;
+        default:
+            throw error("unknown engine setting: %s", name);
+        }
+    }
+
+    /** Return a new player using my settings that plays MYCOLOR in
+     *  GAME.  An AI uses GAME's weights unless I specify others. */
+    Player newPlayer(Game game, PieceColor myColor) {
+        switch (_engine) {
+        case MCTS:
+            return new MCTS(game, myColor, _playouts, _threads);
+        default:
+            return new AI(game, myColor, _depth,
+                          _weights == null ? game.weights() : _weights);
+        }
+    }
+
+    /** Return my engine. */
+    Engine engine() {
+        return _engine;
+    }
+
+    @Override
+    public String toString() {
+        switch (_engine) {
+        case MCTS:
+            return String.format("mcts:playouts=%d,threads=%d",
+                                 _playouts, _threads);
+        default:
+            return String.format("ai:depth=%d%s", _depth,
+                                 _weightsFile == null ? ""
+                                 : ",weights=" + _weightsFile);
+        }
+    }
+
+    /** The engine to use. */
+    private final Engine _engine;
+    /** Search depth of an AI. */
+    private int _depth;
+    /** Evaluation weights of an AI (null for its game's). */
+    private Weights _weights;
+    /** File from which _weights came. */
+    private String _weightsFile;
+    /** Playouts per move of an MCTS player. */
+    private int _playouts;
+    /** Searching threads of an MCTS player. */
+    private int _threads;
+}
@@ -0,0 +1,371 @@
+package qirkat;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import static qirkat.GameException.error;
+import static qirkat.PieceColor.*;
+
+/** The settings and shared state of the computer players of one Game:
+ *  their source of random numbers, evaluation weights, search depth,
+ *  time, threads and transposition table, the cache of generated moves
+ *  shared by the game's boards, the pool (if any) on which they search,
+ *  and whether and how long their moves take.
+ *  Each Game has its own context, so that games running at once in one
+ *  process do not affect one another.
+ *  @author Mudabbir Khan
+ */
+class EngineContext {
+
+    /** A context with default weights and no timing, running searches on
+     *  the game's own thread. */
+    EngineContext() {
+        _randoms = new Random();
+        _weights = Weights.DEFAULT;
+        _depth = AI.MAX_DEPTH;
+        _threads = 1;
+        _hashMegabytes = DEFAULT_HASH_MEGABYTES;
+    }
+
+    /** Default size of the transposition table: none, so that AIs
+     *  search exactly as without one unless asked. */
+    static final int DEFAULT_HASH_MEGABYTES = 0;
+    /** Size of the transposition table created for a hash file when
+     *  there is none. */
+    static final int HASH_FILE_MEGABYTES = 16;
+    /** Greatest allowed search depth. */
+    static final int MAX_DEPTH = 64;
+    /** Greatest allowed number of searching threads. */
+    static final int MAX_THREADS = 256;
+
+    /** Return true iff computer players' moves are timed. */
+    boolean timing() {
+        return _timing;
+    }
+
+    /** Time computer players' moves iff TIMING. */
+    void setTiming(boolean timing) {
+        _timing = timing;
+    }
+
+    /** Return true iff AIs report the progress of their searches. */
+    boolean progress() {
+        return _progress;
+    }
+
+    /** Have AIs report the progress of their searches (to their games'
+     *  reporters) iff PROGRESS. */
+    void setProgress(boolean progress) {
+        _progress = progress;
+    }
+
+    /** Return the evaluation weights of AIs. */
+    Weights weights() {
+        return _weights;
+    }
+
+    /** Use WEIGHTS as the evaluation weights of AIs.  If they score
+     *  positions differently from the current ones, empty the AIs'
+     *  transposition table, whose scores they make meaningless. */
+    synchronized void setWeights(Weights weights) {
+        if (_table != null
+            && weights.fingerprint() != _weights.fingerprint()) {
+            _table.clear();
+        }
+        _weights = weights;
+    }
+
+    /** Return the fingerprint of the evaluation used by AIs' searches,
+     *  recorded in saved transposition tables: that of their weights,
+     *  combined with AI.SEARCH_VERSION. */
+    long evaluation() {
+        return _weights.fingerprint() * 31 + AI.SEARCH_VERSION;
+    }
+
+    /** Return the depth to which AIs search (the greatest depth, if they
+     *  have a time limit). */
+    int depth() {
+        return _depth;
+    }
+
+    /** Have AIs search to DEPTH, 1 <= DEPTH <= MAX_DEPTH. */
+    void setDepth(int depth) {
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw error("depth must be between 1 and %d", MAX_DEPTH);
+        }
+        _depth = depth;
+    }
+
+    /** Return the time limit of AIs' searches in milliseconds, or 0 if
+     *  there is none. */
+    long moveTime() {
+        return _moveTime;
+    }
+
+    /** Limit AIs' searches to about MOVETIME milliseconds (no limit if
+     *  0). */
+    void setMoveTime(long moveTime) {
+        if (moveTime < 0) {
+            throw error("movetime must not be negative");
+        }
+        _moveTime = moveTime;
+    }
+
+    /** Return the hard limit on the time an AI may take to choose a
+     *  move in milliseconds, or 0 if there is none. */
+    long moveLimit() {
+        return _moveLimit;
+    }
+
+    /** Require AIs to move within MOVELIMIT milliseconds (no limit if
+     *  0), playing the best move found so far when time runs out.
+     *  Unlike the time set by setMoveTime, this may cut short the
+     *  search of the first depth. */
+    void setMoveLimit(long moveLimit) {
+        if (moveLimit < 0) {
+            throw error("movelimit must not be negative");
+        }
+        _moveLimit = moveLimit;
+    }
+
+    /** Return the number of threads each computer player searches
+     *  with. */
+    int threads() {
+        return _threads;
+    }
+
+    /** Have each computer player search with THREADS threads,
+     *  1 <= THREADS <= MAX_THREADS. */
+    void setThreads(int threads) {
+        if (threads < 1 || threads > MAX_THREADS) {
+            throw error("threads must be between 1 and %d", MAX_THREADS);
+        }
+        _threads = threads;
+    }
+
+    /** Return the size of the AIs' transposition table in megabytes (0
+     *  if they use none). */
+    int hashMegabytes() {
+        return _hashMegabytes;
+    }
+
+    /** Give AIs a new, empty transposition table of MEGABYTES megabytes
+     *  (none if 0). */
+    synchronized void setHash(int megabytes) {
+        if (megabytes < 0
+            || megabytes > TranspositionTable.MAX_MEGABYTES) {
+            throw error("hash size must be between 0 and %d",
+                        TranspositionTable.MAX_MEGABYTES);
+        }
+        _table = null;
+        _hashMegabytes = 0;
+        if (megabytes > 0) {
+            try {
+                _table = new TranspositionTable(megabytes);
+            } catch (OutOfMemoryError excp) {
+                throw error("cannot allocate %d MB for the hash table",
+                            megabytes);
+            }
+            _hashMegabytes = megabytes;
+        }
+    }
+
+    /** Return the AIs' transposition table, creating it if necessary, or
+     *  null if they use none. */
+    synchronized TranspositionTable table() {
+        if (_table == null && _hashMegabytes > 0) {
+            _table = new TranspositionTable(_hashMegabytes);
+        }
+        return _table;
+    }
+
+    /** Keep the AIs' transposition table in FILE between sessions: add
+     *  the entries saved there, if it exists, to the table now, and save
+     *  the table there when saveHash() is called.  If the AIs have no
+     *  table, first give them one of HASH_FILE_MEGABYTES megabytes. */
+    void setHashFile(String file) {
+        if (hashMegabytes() == 0) {
+            setHash(HASH_FILE_MEGABYTES);
+        }
+        _hashFile = file;
+        TranspositionTable table = table();
+        if (table != null && Files.exists(Paths.get(file))) {
+            table.load(file, evaluation());
+        }
+    }
+
+    /** Save the AIs' transposition table in the file set by setHashFile,
+     *  if any. */
+    void saveHash() {
+        TranspositionTable table;
+        synchronized (this) {
+            table = _table;
+        }
+        if (_hashFile == null || table == null) {
+            return;
+        }
+        try {
+            table.save(_hashFile, evaluation());
+        } catch (IOException excp) {
+            throw error("Cannot write file %s", _hashFile);
+        }
+    }
+
+    /** Return the pool running searches, or null if the game's own thread
+     *  runs them. */
+    ExecutorService engines() {
+        return _engines;
+    }
+
+    /** Run searches on ENGINES (null for the game's own thread). */
+    void setEngines(ExecutorService engines) {
+        _engines = engines;
+    }
+
+    /** Return random integer between 0 (inclusive) and MAX>0
+     *  (exclusive). */
+    int nextRandom(int max) {
+        return _randoms.nextInt(max);
+    }
+
+    /** Reseed my random numbers with SEED. */
+    void setSeed(long seed) {
+        _randoms.setSeed(seed);
+    }
+
+    /** Return the cache of generated moves of the game's boards. */
+    MoveCache moveCache() {
+        return _moveCache;
+    }
+
+    /** Return the latency histograms of the computer players. */
+    LatencyStats latency() {
+        return _latency;
+    }
+
+    /** Write the statistics report to FILE when the game ends (not at
+     *  all if FILE is null). */
+    void setStatsFile(String file) {
+        _statsFile = file;
+    }
+
+    /** Return a report of the computer players' statistics, as lines. */
+    synchronized List<String> statsReport() {
+        List<String> result = new ArrayList<>();
+        result.add("Latency (usec):");
+        result.addAll(_latency.report());
+        result.add("Search:");
+        for (PieceColor player : new PieceColor[] { WHITE, BLACK }) {
+            SearchStats stats = _searchStats[player == WHITE ? 0 : 1];
+            if (stats.searches() > 0) {
+                result.add(String.format("%s: searches=%d %s",
+                                         player.toString().toLowerCase(),
+                                         stats.searches(), stats));
+            }
+        }
+        result.add("Move cache: " + _moveCache);
+        return result;
+    }
+
+    /** Add STATS, the statistics of a search by PLAYER, to the totals
+     *  reported by statsReport(). */
+    synchronized void addSearchStats(PieceColor player, SearchStats stats) {
+        _searchStats[player == WHITE ? 0 : 1].add(stats);
+    }
+
+    /** Write statsReport() to the file set by setStatsFile, if any. */
+    void exportStats() {
+        if (_statsFile == null) {
+            return;
+        }
+        try (PrintWriter out = new PrintWriter(new FileWriter(_statsFile))) {
+            for (String line : statsReport()) {
+                out.println(line);
+            }
+        } catch (IOException excp) {
+            throw error("Cannot write file %s", _statsFile);
+        }
+    }
+
+    /** Start timing a move, returning a value to pass to endTiming. */
+    long startTiming() {
+        return System.nanoTime();
+    }
+
+    /** End the timing of a move by PLAYER in PHASE, for which
+     *  startTiming returned START.  Record the time, and report it if we
+     *  are timing. */
+    synchronized void endTiming(long start, PieceColor player,
+                                LatencyStats.Phase phase) {
+        long nanos = System.nanoTime() - start;
+        _latency.record(player, phase, LatencyStats.Metric.SEARCH, nanos);
+        if (_timing) {
+            long time = nanos / 1_000_000;
+            System.err.printf("[%d msec]%n", time);
+            _maxTime = Math.max(_maxTime, time);
+            _totalTime += time;
+            _numTimedOps += 1;
+        }
+    }
+
+    /** Report total time statistics, if timing. */
+    synchronized void reportTotalTimes() {
+        if (_timing && _numTimedOps > 0) {
+            System.err.printf("[Total time: %d msec for %d operations. "
+                              + "Avg: %d msec/operation. "
+                              + "Max: %d msec]%n", _totalTime,
+                              _numTimedOps, _totalTime / _numTimedOps,
+                              _maxTime);
+        }
+    }
+
+    /** Search depth of AIs. */
+    private volatile int _depth;
+    /** Time limit of AIs' searches (ms), or 0. */
+    private volatile long _moveTime;
+    /** Hard time limit per move (ms), or 0. */
+    private volatile long _moveLimit;
+    /** Threads per computer player. */
+    private volatile int _threads;
+    /** Size of the transposition table (megabytes). */
+    private int _hashMegabytes;
+    /** The transposition table, or null if not yet created. */
+    private TranspositionTable _table;
+    /** File holding the transposition table between sessions, or
+     *  null. */
+    private volatile String _hashFile;
+    /** Cache of generated moves, sharing the entries of
+     *  MoveCache.SHARED. */
+    private final MoveCache _moveCache = new MoveCache(MoveCache.SHARED);
+    /** Latency histograms. */
+    private final LatencyStats _latency = new LatencyStats();
+    /** Total search statistics of white and black. */
+    private final SearchStats[] _searchStats = {
+        new SearchStats(), new SearchStats()
+    };
+    /** File receiving statistics at the end of the game, or null. */
+    private volatile String _statsFile;
+    /** Source of pseudo-random numbers (used by AIs). */
+    private final Random _randoms;
+    /** Evaluation weights of AIs. */
+    private volatile Weights _weights;
+    /** Pool running searches, or null. */
+    private volatile ExecutorService _engines;
+    /** True iff moves are timed. */
+    private volatile boolean _timing;
+    /** True iff searches report their progress. */
+    private volatile boolean _progress;
+    /** Accumulated time. */
+    private long _totalTime;
+    /** Number of operations timed. */
+    private int _numTimedOps;
+    /** Maximum operation time. */
+    private long _maxTime;
+}
@@ -0,0 +1,125 @@
+package qirkat;
+
+import static qirkat.PieceColor.*;
+
+/** A single game between two computer players, played without any
+ *  input, prompts or output.
+ *  @author Mudabbir Khan
+ */
+class EngineGame {
+
+    /** Default limit on the length of a game, in plies, after which it
+     *  is scored as a draw. */
+    static final int DEFAULT_MAX_PLIES = 500;
+
+    /** A game between players configured by WHITE and BLACK, starting
+     *  from OPENING (a SETBOARD command, or null for the standard
+     *  initial position), with the random seed SEED, that is declared
+     *  drawn after MAXPLIES plies. */
+    EngineGame(EngineConfig white, EngineConfig black, Command opening,
+               long seed, int maxPlies) {
+        _board = new Board();
+        _game = new Game(_board, prompt -> null, new SilentReporter());
+        if (opening != null) {
+            _game.doSet(opening.operands());
+        }
+        _game.doSeed(new String[] { Long.toString(seed) });
+        _white = white.newPlayer(_game, WHITE);
+        _black = black.newPlayer(_game, BLACK);
+        _maxPlies = maxPlies;
+    }
+
+    /** Play the game to its end, and return the winner (EMPTY for a
+     *  draw). */
+    PieceColor play() {
+        if (_board.getMoves().isEmpty()) {
+            throw new IllegalArgumentException("no moves from opening");
+        }
+        while (!_board.gameOver()) {
+            if (_plies == _maxPlies) {
+                _winner = EMPTY;
+                return _winner;
+            }
+            PieceColor side = _board.whoseMove();
+            Player player = side == WHITE ? _white : _black;
+            long start = System.nanoTime();
+            Move move = player.myMove();
+            _nanos[side.ordinal()] += System.nanoTime() - start;
+            _nodes[side.ordinal()] += player.lastNodes();
+            _moves[side.ordinal()] += 1;
+            recordPosition(_board, player);
+            _board.makeMove(move);
+            _plies += 1;
+        }
+        _winner = _board.whoseMove().opposite();
+        return _winner;
+    }
+
+    /** Called with the current BOARD after PLAYER has chosen its move
+     *  from it, but before the move is made.  Does nothing by default. */
+    void recordPosition(Board board, Player player) {
+    }
+
+    /** Return the winner of the game after play() (EMPTY for a draw). */
+    PieceColor winner() {
+        return _winner;
+    }
+
+    /** Return the number of plies played. */
+    int plies() {
+        return _plies;
+    }
+
+    /** Return the number of moves made by SIDE. */
+    int moves(PieceColor side) {
+        return _moves[side.ordinal()];
+    }
+
+    /** Return the total time SIDE spent choosing moves, in nanoseconds. */
+    long nanos(PieceColor side) {
+        return _nanos[side.ordinal()];
+    }
+
+    /** Return the total number of positions examined by SIDE. */
+    long nodes(PieceColor side) {
+        return _nodes[side.ordinal()];
+    }
+
+    /** A Reporter that discards all messages. */
+    static class SilentReporter implements Reporter {
+        @Override
+        public void errMsg(String format, Object... args) {
+        }
+
+        @Override
+        public void outcomeMsg(String format, Object... args) {
+        }
+
+        @Override
+        public void moveMsg(String format, Object... args) {
+        }
+
+        @Override
+        public void textMsg(String line) {
+        }
+    }
+
+    /** The board being played on. */
+    private final Board _board;
+    /** The game supplying the players' board view and random numbers. */
+    private final Game _game;
+    /** The players. */
+    private final Player _white, _black;
+    /** Ply limit. */
+    private final int _maxPlies;
+    /** Plies played so far. */
+    private int _plies;
+    /** The winner, once play() returns. */
+    private PieceColor _winner;
+    /** Moves made per side (indexed by ordinal). */
+    private final int[] _moves = new int[PieceColor.values().length];
+    /** Time spent per side (ns). */
+    private final long[] _nanos = new long[PieceColor.values().length];
+    /** Positions examined per side. */
+    private final long[] _nodes = new long[PieceColor.values().length];
+}
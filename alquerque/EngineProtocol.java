@@ -0,0 +1,359 @@
+package qirkat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static qirkat.PieceColor.*;
+
+/** Plays as an engine controlled by another program (such as a
+ *  tournament manager) through a line protocol modelled on UCI.  The
+ *  controller sends
+ *
+ *      uci                        identify; answered by "uciok"
+ *      isready                    answered by "readyok"
+ *      setoption name Hash value MB
+ *      setoption name Threads value N
+ *      ucinewgame                 forget the previous game
+ *      position (startpos | board SQUARES SIDE) [moves MOVE...]
+ *      go [depth N] [movetime MSEC] [infinite] [ponder]
+ *      stop                       play the best move found so far
+ *      ponderhit                  the move pondered on was played
+ *      quit
+ *
+ *  where SQUARES is 25 characters, each b, w, or -, giving the contents
+ *  of the squares as for the set command, and SIDE is white or black.
+ *  During a search the engine sends a line
+ *
+ *      info depth D score S nodes N nps R time MSEC pv MOVE
+ *
+ *  for each depth completed (S is from the point of view of the side to
+ *  move), and finally "bestmove MOVE" ("bestmove (none)" if the side to
+ *  move has no moves).  A search started by "go infinite" or "go ponder"
+ *  sends its bestmove only after "stop" (or, when pondering, "ponderhit"
+ *  and the end of the search).  A search limited only by time (by
+ *  "movetime" or "infinite", without "depth") may go as deep as
+ *  EngineContext.MAX_DEPTH rather than the default depth.  Other
+ *  commands wait for the search in progress to end (stopping it if it
+ *  is waiting for "stop"), except for "quit", which stops it.
+ *  Malformed commands are answered with an "info string" line and
+ *  otherwise ignored.
+ *  @author Mudabbir Khan
+ */
+class EngineProtocol {
+
+    /** Time limit (ms) of searches with none: long enough never to end
+     *  a search, yet without overflowing when converted to
+     *  nanoseconds. */
+    private static final long NO_LIMIT = 1L << 40;
+
+    /** An engine reading commands from INPUT and writing its replies to
+     *  OUTPUT, with the engine settings in CONTEXT. */
+    EngineProtocol(Reader input, Writer output, EngineContext context) {
+        _input = new BufferedReader(input);
+        _output = new PrintWriter(output, true);
+        _context = context;
+        _game = new Game(_board, prompt -> null,
+                         new EngineGame.SilentReporter(), context);
+    }
+
+    /** Execute commands until the end of input or "quit".  At the end
+     *  of input, first let any search in progress finish. */
+    void run() throws IOException {
+        while (true) {
+            String line = _input.readLine();
+            if (line == null) {
+                break;
+            }
+            String[] words = line.trim().split("\\s+");
+            if (words[0].equals("quit")) {
+                stop();
+                break;
+            }
+            try {
+                execute(words);
+            } catch (GameException | NumberFormatException excp) {
+                _output.println("info string " + excp.getMessage());
+            }
+        }
+        finish();
+    }
+
+    /** Execute the command whose words are WORDS. */
+    private void execute(String[] words) {
+        switch (words[0]) {
+        case "":
+            break;
+        case "uci":
+            _output.println("id name Qirkat");
+            _output.println("id author Mudabbir Khan");
+            _output.printf("option name Hash type spin default %d"
+                           + " min 0 max %d%n",
+                           EngineContext.DEFAULT_HASH_MEGABYTES,
+                           TranspositionTable.MAX_MEGABYTES);
+            _output.printf("option name Threads type spin default 1"
+                           + " min 1 max %d%n", EngineContext.MAX_THREADS);
+            _output.println("uciok");
+            break;
+        case "isready":
+            _output.println("readyok");
+            break;
+        case "setoption":
+            finish();
+            setOption(words);
+            break;
+        case "ucinewgame":
+            finish();
+            _board.clear();
+            break;
+        case "position":
+            finish();
+            position(words);
+            break;
+        case "go":
+            finish();
+            go(words);
+            break;
+        case "stop":
+            stop();
+            break;
+        case "ponderhit":
+            ponderHit();
+            break;
+        default:
+            throw GameException.error("unknown command: %s", words[0]);
+        }
+    }
+
+    /** Perform "setoption name NAME value VALUE", whose words are
+     *  WORDS. */
+    private void setOption(String[] words) {
+        if (words.length != 5 || !words[1].equals("name")
+            || !words[3].equals("value")) {
+            throw GameException.error("bad setoption command");
+        }
+        int value = Integer.parseInt(words[4]);
+        switch (words[2].toLowerCase()) {
+        case "hash":
+            _context.setHash(value);
+            break;
+        case "threads":
+            _context.setThreads(value);
+            break;
+        default:
+            throw GameException.error("unknown option: %s", words[2]);
+        }
+    }
+
+    /** Perform the position command whose words are WORDS. */
+    private void position(String[] words) {
+        int k;
+        if (words.length >= 2 && words[1].equals("startpos")) {
+            _board.clear();
+            k = 2;
+        } else if (words.length >= 4 && words[1].equals("board")) {
+            PieceColor side;
+            if (words[3].equals("white")) {
+                side = WHITE;
+            } else if (words[3].equals("black")) {
+                side = BLACK;
+            } else {
+                throw GameException.error("bad side to move: %s", words[3]);
+            }
+            try {
+                _board.setPieces(words[2], side);
+            } catch (IllegalArgumentException excp) {
+                throw GameException.error("bad board: %s", words[2]);
+            }
+            k = 4;
+        } else {
+            throw GameException.error("bad position command");
+        }
+        if (k < words.length) {
+            if (!words[k].equals("moves")) {
+                throw GameException.error("bad position command");
+            }
+            for (k += 1; k < words.length; k += 1) {
+                Move mov;
+                try {
+                    mov = Move.parseMove(words[k]);
+                } catch (IllegalArgumentException excp) {
+                    mov = null;
+                }
+                if (mov == null || !_board.isLegal(mov)) {
+                    throw GameException.error("illegal move: %s", words[k]);
+                }
+                _board.makeMove(mov);
+            }
+        }
+    }
+
+    /** Start the search requested by the go command whose words are
+     *  WORDS. */
+    private void go(String[] words) {
+        int depth = _context.depth();
+        long moveTime = _context.moveTime();
+        boolean ponder = false, infinite = false, depthGiven = false,
+            timeGiven = false;
+        for (int k = 1; k < words.length; k += 1) {
+            switch (words[k]) {
+            case "depth":
+                depth = Integer.parseInt(operand(words, ++k));
+                depthGiven = true;
+                if (depth < 1 || depth > EngineContext.MAX_DEPTH) {
+                    throw GameException.error("depth must be between 1"
+                                              + " and %d",
+                                              EngineContext.MAX_DEPTH);
+                }
+                break;
+            case "movetime":
+                moveTime = Long.parseLong(operand(words, ++k));
+                timeGiven = true;
+                break;
+            case "infinite":
+                infinite = true;
+                break;
+            case "ponder":
+                ponder = true;
+                break;
+            default:
+                throw GameException.error("bad go option: %s", words[k]);
+            }
+        }
+        if ((infinite || timeGiven) && !depthGiven) {
+            depth = EngineContext.MAX_DEPTH;
+        }
+        if (_board.getMoves().isEmpty()) {
+            _output.println("bestmove (none)");
+            return;
+        }
+
+        PieceColor side = _board.whoseMove();
+        AI ai = new AI(_game, side, depth, _context.weights());
+        ai.setThreads(_context.threads());
+        ai.setTable(_context.table());
+        ai.setMoveTime(infinite || ponder || moveTime <= 0 ? NO_LIMIT
+                       : moveTime);
+        int sense = side == WHITE ? 1 : -1;
+        ai.setListener((d, score, nodes, nanos, best) -> {
+            _output.printf("info depth %d score %d nodes %d nps %d"
+                           + " time %d pv %s%n", d, sense * score, nodes,
+                           nodes * 1_000_000_000L / Math.max(1, nanos),
+                           nanos / 1_000_000, best);
+        });
+        synchronized (this) {
+            _ai = ai;
+            _held = infinite || ponder;
+            _ponderTime = ponder && !infinite ? moveTime : 0;
+            _search = SEARCHER.submit(() -> {
+                Move move = ai.myMove();
+                synchronized (this) {
+                    while (_held) {
+                        try {
+                            wait();
+                        } catch (InterruptedException excp) {
+                            break;
+                        }
+                    }
+                }
+                _output.println("bestmove " + move);
+            });
+        }
+    }
+
+    /** Return WORDS[K], the operand of the option before it. */
+    private static String operand(String[] words, int k) {
+        if (k == words.length) {
+            throw GameException.error("missing value for %s", words[k - 1]);
+        }
+        return words[k];
+    }
+
+    /** End the search in progress, if any, so that it reports the best
+     *  move it has found. */
+    private synchronized void stop() {
+        if (_ai != null) {
+            _held = false;
+            notifyAll();
+            _ai.hurry();
+        }
+    }
+
+    /** Note that the move being pondered on was played: the search in
+     *  progress becomes a normal search, limited to the time requested
+     *  when it started, if any. */
+    private synchronized void ponderHit() {
+        if (_ai != null) {
+            _held = false;
+            notifyAll();
+            if (_ponderTime > 0) {
+                CompletableFuture.delayedExecutor(_ponderTime,
+                                                  TimeUnit.MILLISECONDS)
+                    .execute(_ai::hurry);
+            }
+        }
+    }
+
+    /** Wait for the search in progress, if any, to send its bestmove,
+     *  first stopping it if it would otherwise wait for "stop" or
+     *  "ponderhit". */
+    private void finish() {
+        Future<?> search;
+        synchronized (this) {
+            search = _search;
+            if (_held) {
+                stop();
+            }
+        }
+        if (search == null) {
+            return;
+        }
+        try {
+            search.get();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException excp) {
+            _output.println("info string search failed: " + excp.getCause());
+        }
+        synchronized (this) {
+            _search = null;
+            _ai = null;
+        }
+    }
+
+    /** Thread that runs searches. */
+    private static final ExecutorService SEARCHER =
+        Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "engine-search");
+            t.setDaemon(true);
+            return t;
+        });
+
+    /** Source of commands. */
+    private final BufferedReader _input;
+    /** Destination of replies. */
+    private final PrintWriter _output;
+    /** Engine settings. */
+    private final EngineContext _context;
+    /** The position to search. */
+    private final Board _board = new Board();
+    /** The game supplying _board and _context to AIs. */
+    private final Game _game;
+    /** The AI searching, or null. */
+    private AI _ai;
+    /** The search in progress (or finished, but not waited for), or
+     *  null. */
+    private Future<?> _search;
+    /** True while the search in progress must not send its bestmove. */
+    private boolean _held;
+    /** Time limit (ms) of a pondering search after ponderhit, or 0. */
+    private long _ponderTime;
+}
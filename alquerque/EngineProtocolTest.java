@@ -0,0 +1,105 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/** Tests of EngineProtocol.
+ *  @author Mudabbir Khan
+ */
+public class EngineProtocolTest {
+
+    /** Return the output of an engine given INPUT. */
+    private static String[] converse(String input) throws IOException {
+        StringWriter output = new StringWriter();
+        new EngineProtocol(new StringReader(input), output,
+                           new EngineContext()).run();
+        return output.toString().split("\n");
+    }
+
+    @Test
+    public void testSearch() throws IOException {
+        String[] lines =
+            converse("uci\nisready\nposition startpos moves c2-c3 c4-c2\n"
+                     + "go depth 3\n");
+        assertEquals("uciok", lines[4]);
+        assertEquals("readyok", lines[5]);
+        for (int d = 1; d <= 3; d += 1) {
+            assertTrue(lines[5 + d].matches("info depth " + d
+                                            + " score -?\\d+ nodes \\d+"
+                                            + " nps \\d+ time \\d+"
+                                            + " pv \\S+"));
+        }
+        assertTrue(lines[9].startsWith("bestmove "));
+        Board board = new Board();
+        board.makeMove(Move.parseMove("c2-c3"));
+        board.makeMove(Move.parseMove("c4-c2"));
+        assertTrue(board.legalMove(Move.parseMove(lines[9].substring(9))));
+        assertEquals(10, lines.length);
+    }
+
+    @Test
+    public void testPonderAndErrors() throws IOException {
+        String[] lines =
+            converse("position board wwwww-------b-------bbbbb white\n"
+                     + "go ponder depth 2\nponderhit\n"
+                     + "position startpos moves c2-c2\ngo depth\n");
+        assertTrue(lines[0].startsWith("info depth 1 "));
+        assertTrue(lines[1].startsWith("info depth 2 "));
+        assertTrue(lines[2].startsWith("bestmove "));
+        assertEquals("info string illegal move: c2-c2", lines[3]);
+        assertEquals("info string missing value for depth", lines[4]);
+        assertEquals(5, lines.length);
+    }
+
+    @Test
+    public void testMoveTime() throws IOException {
+        long start = System.nanoTime();
+        String[] lines = converse("go movetime 1000\n");
+        assertTrue(System.nanoTime() - start > 900_000_000L);
+        assertTrue(lines[lines.length - 1].startsWith("bestmove "));
+        int deepest = 0;
+        for (String line : lines) {
+            if (line.startsWith("info depth ")) {
+                deepest = Integer.parseInt(line.split(" ")[2]);
+            }
+        }
+        assertTrue(deepest > AI.MAX_DEPTH);
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        PipedWriter input = new PipedWriter();
+        PipedReader reader = new PipedReader(input);
+        StringWriter output = new StringWriter();
+        Thread engine = new Thread(() -> {
+            try {
+                new EngineProtocol(reader, output, new EngineContext())
+                    .run();
+            } catch (IOException excp) {
+                throw new RuntimeException(excp);
+            }
+        });
+        engine.start();
+        input.write("go depth 20\n");
+        input.flush();
+        Thread.sleep(300);
+        input.write("stop\n");
+        input.close();
+        engine.join(10_000);
+        assertFalse(engine.isAlive());
+        String[] lines = output.toString().split("\n");
+        String last = lines[lines.length - 1];
+        assertTrue(last.startsWith("bestmove "));
+        String info = lines[lines.length - 2];
+        assertTrue(info.startsWith("info depth "));
+        assertTrue(Integer.parseInt(info.split(" ")[2]) < 20);
+        assertEquals(info.substring(info.lastIndexOf(' ') + 1),
+                     last.substring(9));
+    }
+}
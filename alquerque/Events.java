@@ -0,0 +1,151 @@
+package qirkat;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Java Flight Recorder events describing what the engine is doing, so
+ *  that recordings can relate pauses and CPU use to particular games,
+ *  searches and moves.  All are disabled by default, so that a recording
+ *  made with the standard settings contains none of them; enable them
+ *  with the settings in qirkat.jfc, e.g.
+ *
+ *      java -XX:StartFlightRecording=settings=default,
+ *           settings=alquerque/qirkat.jfc,filename=game.jfr qirkat.Main
+ *
+ *  (all on one line).  Code that emits an event creates it and checks
+ *  shouldCommit() (or isEnabled()) before doing any other work, which
+ *  costs next to nothing while the event is disabled.
+ *  @author Mudabbir Khan
+ */
+class Events {
+
+    /** Category of all these events. */
+    private static final String CATEGORY = "Qirkat";
+
+    /** One game, from the first move to its end.  Its duration is the
+     *  length of the game. */
+    @Name("qirkat.Game")
+    @Label("Game")
+    @Description("A game, from its start to its end")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static class GameEvent extends Event {
+        /** The white player. */
+        @Label("White")
+        String white;
+        /** The black player. */
+        @Label("Black")
+        String black;
+        /** Number of moves made. */
+        @Label("Moves")
+        int moves;
+        /** How the game ended. */
+        @Label("Outcome")
+        String outcome;
+    }
+
+    /** The start of a game (the start of a GameEvent, recorded
+     *  separately so that a game in progress shows in a recording). */
+    @Name("qirkat.GameStart")
+    @Label("Game Start")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static class GameStartEvent extends Event {
+        /** The white player. */
+        @Label("White")
+        String white;
+        /** The black player. */
+        @Label("Black")
+        String black;
+    }
+
+    /** One search for a move by a computer player.  Its start and
+     *  duration are the start and length of the search. */
+    @Name("qirkat.Search")
+    @Label("Search")
+    @Description("A computer player's search for a move")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static class SearchEvent extends Event {
+        /** The kind of player searching. */
+        @Label("Engine")
+        String engine;
+        /** The side to move. */
+        @Label("Side")
+        String side;
+        /** Depth of the deepest completed iteration (0 for MCTS). */
+        @Label("Depth")
+        int depth;
+        /** Number of positions (or playouts) searched. */
+        @Label("Nodes")
+        long nodes;
+        /** Value of the position found (positive favors white). */
+        @Label("Score")
+        int score;
+        /** The move chosen. */
+        @Label("Move")
+        String move;
+    }
+
+    /** One completed iteration of an iteratively deepening search. */
+    @Name("qirkat.Iteration")
+    @Label("Search Iteration")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static class IterationEvent extends Event {
+        /** Depth searched. */
+        @Label("Depth")
+        int depth;
+        /** Number of positions searched so far by this search. */
+        @Label("Nodes")
+        long nodes;
+        /** Value found at this depth. */
+        @Label("Score")
+        int score;
+        /** Best move found at this depth. */
+        @Label("Move")
+        String move;
+    }
+
+    /** The use of an AI's transposition table during one search. */
+    @Name("qirkat.TranspositionTable")
+    @Label("Transposition Table")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static class TableEvent extends Event {
+        /** Number of entries in the table. */
+        @Label("Entries")
+        long entries;
+        /** Number of probes by the search's main thread. */
+        @Label("Probes")
+        long probes;
+        /** Number of those probes that found an entry. */
+        @Label("Hits")
+        long hits;
+    }
+
+    /** A move made on a Board, including those made while searching. */
+    @Name("qirkat.MakeMove")
+    @Label("Make Move")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static class MoveEvent extends Event {
+        /** The side moving. */
+        @Label("Side")
+        String side;
+        /** The move. */
+        @Label("Move")
+        String move;
+    }
+}
@@ -3,7 +3,6 @@ package qirkat;
 import ucb.gui2.TopLevel;
 import ucb.gui2.LayoutSpec;
 
-import java.util.EmptyStackException;
 import java.util.Observable;
 import java.util.Observer;
 
@@ -38,6 +37,9 @@ class GUI extends TopLevel implements Observer, Reporter {
      * and PipedWriter classes) provides input to the Game using exactly the
      * same API as would be used to read from a terminal. Thus, a simple
      * Manual player can handle all commands and moves from the GUI.
+     * Alternatively, the GUI parses each command itself and posts it to a
+     * CommandQueue that the Game reads from, which avoids blocking on a
+     * full pipe and the round trip through text.
      *
      * See also Main.java for how this might get set up.
      */
@@ -49,6 +51,20 @@ class GUI extends TopLevel implements Observer, Reporter {
      *  It uses OUTCOMMANDS to send commands to a game instance, using the
      *  same commands as the text format for Qirkat. */
     GUI(String title, Board model, Writer outCommands) {
+        this(title, model, new PrintWriter(outCommands, true), null);
+    }
+
+    /** A new display observing MODEL, with TITLE as its window title.
+     *  It posts commands for a game instance to COMMANDS. */
+    GUI(String title, Board model, CommandQueue commands) {
+        this(title, model, null, commands);
+    }
+
+    /** A new display observing MODEL, with TITLE as its window title,
+     *  sending commands to OUT if it is not null, and otherwise posting
+     *  them to COMMANDS. */
+    private GUI(String title, Board model, PrintWriter out,
+                CommandQueue commands) {
         super(title, true);
         addMenuButton("Game->New", this::doNew);
         addMenuButton("Game->Start", this::start);
@@ -71,7 +87,8 @@ class GUI extends TopLevel implements Observer, Reporter {
         addLabel("", "Message", new LayoutSpec("y", 2));
         _model = model;
         _widget = new BoardWidget(model);
-        _out = new PrintWriter(outCommands, true);
+        _out = out;
+        _commands = commands;
         add(_widget,
             new LayoutSpec("height", "1",
                            "width", "REMAINDER",
@@ -84,33 +101,51 @@ class GUI extends TopLevel implements Observer, Reporter {
         start("");
     }
 
+    /** Use GAME, the game I send commands to, to abandon its searches
+     *  when a command must take effect at once. */
+    void setGame(Game game) {
+        _game = game;
+    }
+
+    /** Send the command whose text is COMMAND to the game. */
+    private void send(String command) {
+        if (_out != null) {
+            _out.println(command);
+        } else {
+            _commands.post(command);
+        }
+    }
+
+    /** Abandon the game's search in progress, if any, so that it
+     *  executes the command just sent. */
+    private void abortSearch() {
+        if (_game != null) {
+            _game.abortSearch();
+        }
+    }
+
     /** Comment. */
     private synchronized void doNew(String unused) {
-        _out.printf("clear%n");
+        send("clear");
+        abortSearch();
     }
 
     /** Comment. */
     private synchronized void start(String unused) {
-        _out.printf("start%n");
+        send("start");
     }
 
     /** Comment. */
     private synchronized void restart(String unused) {
-        _out.printf("clear%n");
-        _out.printf("start%n");
+        send("clear");
+        abortSearch();
+        send("start");
     }
 
     /** Comment. */
     private synchronized void doUndo(String unused) {
-        try {
-            _model.undo();
-            moveMsg("%s to move", _model.whoseMove());
-
-        } catch (NullPointerException e1) {
-            return;
-        } catch (EmptyStackException e2) {
-            return;
-        }
+        send("undo");
+        abortSearch();
     }
 
     /** Comment. */
@@ -121,22 +156,22 @@ class GUI extends TopLevel implements Observer, Reporter {
 
     /** Comment. */
     private synchronized void setWhiteAI(String unused) {
-        _out.printf("auto white%n");
+        send("auto white");
     }
 
     /** Comment. */
     private synchronized void setWhiteManual(String unused) {
-        _out.printf("manual white%n");
+        send("manual white");
     }
 
     /** Comment. */
     private synchronized void setBlackAI(String unused) {
-        _out.printf("auto black%n");
+        send("auto black");
     }
 
     /** Comment. */
     private synchronized void setBlackManual(String unused) {
-        _out.printf("manual black%n");
+        send("manual black");
     }
 
     /** Comment. */
@@ -227,7 +262,7 @@ class GUI extends TopLevel implements Observer, Reporter {
 
     /** Execute the "Quit" button function. */
     private synchronized void quit(String unused) {
-        _out.printf("quit%n");
+        send("quit");
     }
 
     /** Execute Seed... command. */
@@ -239,7 +274,7 @@ class GUI extends TopLevel implements Observer, Reporter {
         }
         try {
             long s = Long.parseLong(resp);
-            _out.printf("seed %d%n", s);
+            send("seed " + s);
         } catch (NumberFormatException excp) {
             return;
         }
@@ -280,6 +315,11 @@ class GUI extends TopLevel implements Observer, Reporter {
         setLabel("Message", String.format(format, args));
     }
 
+    @Override
+    public void progressMsg(String format, Object... args) {
+        setLabel("Message", String.format(format, args));
+    }
+
     @Override
     public void update(Observable obs, Object arg) {
         if (obs == _model) {
@@ -305,8 +345,12 @@ class GUI extends TopLevel implements Observer, Reporter {
     private BoardWidget _widget;
     /** The model of the game. */
     private Board _model;
-    /** Output sink for sending commands to a game. */
+    /** Output sink for sending commands to a game as text, or null. */
     private PrintWriter _out;
+    /** Queue of commands for a game, used if _out is null. */
+    private CommandQueue _commands;
     /** Move selected by clicking. */
     private Move _selectedMove;
+    /** The game receiving my commands, or null if not known. */
+    private Game _game;
 }
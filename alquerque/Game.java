@@ -8,7 +8,8 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
 import static qirkat.PieceColor.*;
@@ -21,62 +22,165 @@ import static qirkat.GameException.error;
  */
 class Game {
 
-    /** States of play. */
+    /** States of play.  FINISHED follows a quit command or the end of
+     *  input. */
     static enum State {
-        SETUP, PLAYING;
+        SETUP, PLAYING, FINISHED;
     }
 
     /** A new Game, using BOARD to play on, reading initially from
-     *  BASESOURCE and using REPORTER for error and informational messages. */
+     *  BASESOURCE and using REPORTER for error and informational messages.
+     *  Its computer players have a new EngineContext. */
     Game(Board board, CommandSource baseSource, Reporter reporter) {
+        this(board, baseSource, reporter, new EngineContext());
+    }
+
+    /** A new Game, using BOARD to play on, reading initially from
+     *  BASESOURCE, using REPORTER for error and informational messages,
+     *  and giving its computer players CONTEXT, whose move cache BOARD
+     *  then uses. */
+    Game(Board board, CommandSource baseSource, Reporter reporter,
+         EngineContext context) {
         _inputs.addSource(baseSource);
         _board = board;
+        _board.setMoveCache(context.moveCache());
         _constBoard = _board.constantView();
         _reporter = reporter;
+        _context = context;
     }
 
-    /** Run a session of Qirkat gaming. */
+    /** Run a session of Qirkat gaming, returning when it is finished. */
     void process() {
         Player white, black;
 
         white = black = null;
         doClear(null);
 
-        while (true) {
+        while (_state != FINISHED) {
             while (_state == SETUP) {
                 doCommand();
             }
+            if (_state == FINISHED) {
+                break;
+            }
             if (_whiteIsManual) {
                 white = new Manual(this, WHITE);
+            } else if (_whiteUsesMcts) {
+                white = new MCTS(this, WHITE, MCTS.DEFAULT_PLAYOUTS,
+                                 _context.threads());
             } else {
                 white = new AI(this, WHITE);
             }
             if (_blackIsManual) {
                 black = new Manual(this, BLACK);
+            } else if (_blackUsesMcts) {
+                black = new MCTS(this, BLACK, MCTS.DEFAULT_PLAYOUTS,
+                                 _context.threads());
             } else {
                 black = new AI(this, BLACK);
             }
 
-            while (_state != SETUP && !_board.gameOver()) {
-                Move move;
-                if (_board.whoseMove() == WHITE) {
-                    move = white.myMove();
-                } else {
-                    move = black.myMove();
-                }
-
-                if (_state == PLAYING) {
+            Events.GameEvent game = new Events.GameEvent();
+            game.begin();
+            gameStarted(white, black);
+            int moves = 0;
+            while (_state == PLAYING && !_board.gameOver()) {
+                Move move =
+                    think(_board.whoseMove() == WHITE ? white : black);
+
+                if (move == null) {
+                    if (_state == PLAYING) {
+                        doCommand();
+                    }
+                } else if (_state == PLAYING) {
                     _board.makeMove(move);
+                    moves += 1;
                 }
             }
 
             if (_state == PLAYING) {
                 reportWinner();
             }
+            game.end();
+            if (game.shouldCommit()) {
+                game.white = playerName(white);
+                game.black = playerName(black);
+                game.moves = moves;
+                game.outcome = _state != PLAYING ? "abandoned"
+                    : _board.whoseMove() == WHITE ? "black wins"
+                    : "white wins";
+                game.commit();
+            }
+            if (_state != FINISHED) {
+                _state = SETUP;
+            }
+        }
 
-            _state = SETUP;
+    }
+
+    /** Record the start of a game between WHITE and BLACK. */
+    private void gameStarted(Player white, Player black) {
+        Events.GameStartEvent event = new Events.GameStartEvent();
+        if (event.shouldCommit()) {
+            event.white = playerName(white);
+            event.black = playerName(black);
+            event.commit();
         }
+    }
 
+    /** Return the kind of player PLAYER is, for event records. */
+    private static String playerName(Player player) {
+        return player.getClass().getSimpleName().toLowerCase();
+    }
+
+    /** Return the move chosen by PLAYER, within my context's move limit
+     *  if it has one, or null if PLAYER is a computer player whose search
+     *  is abandoned by abortSearch.  Also returns null if this thread is
+     *  interrupted while waiting, and finishes the session. */
+    private Move think(Player player) {
+        CancellationToken token = new CancellationToken();
+        long limit = _context.moveLimit();
+        long deadline =
+            limit == 0 ? 0 : System.nanoTime() + limit * 1_000_000;
+        _search = token;
+        try {
+            return await(player.requestMove(deadline, token), token);
+        } finally {
+            _search = null;
+        }
+    }
+
+    /** Abandon the computer player's search in progress, if any, so
+     *  that I then execute the next command from my input without
+     *  making a move.  Intended to be followed by sending the command
+     *  that caused the search to be abandoned.  May be called from any
+     *  thread. */
+    void abortSearch() {
+        CancellationToken token = _search;
+        if (token != null) {
+            token.cancel();
+        }
+    }
+
+    /** Return the value of MOVE, the future result of a search that
+     *  TOKEN cancels, or null (cancelling the search and finishing the
+     *  session) if interrupted while waiting. */
+    private Move await(Future<Move> move, CancellationToken token) {
+        try {
+            return move.get();
+        } catch (InterruptedException excp) {
+            token.cancel();
+            _state = FINISHED;
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof Error) {
+                throw (Error) excp.getCause();
+            } else if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new IllegalStateException(excp.getCause());
+        }
     }
 
     /** Return a read-only view of my game board. */
@@ -87,14 +191,20 @@ class Game {
     /** Perform the next command from our input source. */
     void doCommand() {
         try {
-            Command cmnd =
-                Command.parseCommand(_inputs.getLine("qirkat: "));
+            Command cmnd = nextCommand("qirkat: ");
             _commands.get(cmnd.commandType()).accept(cmnd.operands());
         } catch (GameException excp) {
             _reporter.errMsg(excp.getMessage());
         }
     }
 
+    /** Return the next command from my input (EOF when it is
+     *  exhausted), using PROMPT as for CommandSource.getLine. */
+    private Command nextCommand(String prompt) {
+        Command cmnd = _inputs.getCommand(prompt);
+        return cmnd == null ? Command.parseCommand(null) : cmnd;
+    }
+
     /** Read and execute commands until encountering a move or until
      *  the game leaves playing state due to one of the commands. Return
      *  the terminating move command, or null if the game first drops out
@@ -103,7 +213,7 @@ class Game {
     Command getMoveCmnd(String prompt) {
         while (_state == PLAYING) {
             try {
-                Command cmnd = Command.parseCommand(_inputs.getLine(prompt));
+                Command cmnd = nextCommand(prompt);
                 switch (cmnd.commandType()) {
                 case PIECEMOVE:
                     return cmnd;
@@ -120,9 +230,19 @@ class Game {
         return null;
     }
 
+    /** Return the context of my computer players. */
+    EngineContext context() {
+        return _context;
+    }
+
+    /** Return the evaluation weights used by my AIs. */
+    Weights weights() {
+        return _context.weights();
+    }
+
     /** Return random integer between 0 (inclusive) and MAX>0 (exclusive). */
     int nextRandom(int max) {
-        return _randoms.nextInt(max);
+        return _context.nextRandom(max);
     }
 
     /** Report a move, using a message formed from FORMAT and ARGS as
@@ -131,6 +251,12 @@ class Game {
         _reporter.moveMsg(format, args);
     }
 
+    /** Report the progress of a computer player's search, using a
+     *  message formed from FORMAT and ARGS as for String.format. */
+    void reportProgress(String format, Object... args) {
+        _reporter.progressMsg(format, args);
+    }
+
     /** Report an error, using a message formed from FORMAT and ARGS as
      *  for String.format. */
     void reportError(String format, Object... args) {
@@ -139,13 +265,18 @@ class Game {
 
     /* Command Processors */
 
-    /** Perform the command 'auto OPERANDS[0]'. */
+    /** Perform the command 'auto OPERANDS[0] [OPERANDS[1]]', where the
+     *  optional second operand names the engine ("ai" or "mcts"). */
     void doAuto(String[] operands) {
         _state = SETUP;
+        boolean mcts =
+            operands.length > 1 && operands[1].equalsIgnoreCase("mcts");
         if (operands[0].equalsIgnoreCase("white")) {
             _whiteIsManual = false;
+            _whiteUsesMcts = mcts;
         } else if (operands[0].equalsIgnoreCase("black")) {
             _blackIsManual = false;
+            _blackUsesMcts = mcts;
         } else {
             reportError("Invalid color: %s", operands[0]);
         }
@@ -156,7 +287,7 @@ class Game {
         InputStream helpIn =
             Game.class.getClassLoader().getResourceAsStream("qirkat/help.txt");
         if (helpIn == null) {
-            System.err.println("No help available.");
+            _reporter.errMsg("No help available.");
         } else {
             try {
                 BufferedReader r
@@ -166,7 +297,7 @@ class Game {
                     if (line == null) {
                         break;
                     }
-                    System.out.println(line);
+                    _reporter.textMsg(line);
                 }
                 r.close();
             } catch (IOException e) {
@@ -198,10 +329,22 @@ class Game {
         }
     }
 
-    /** Exit the program. */
+    /** Finish this session, causing process() to return. */
     void doQuit(String[] unused) {
-        Main.reportTotalTimes();
-        System.exit(0);
+        _context.reportTotalTimes();
+        _state = FINISHED;
+        try {
+            _context.exportStats();
+        } finally {
+            _context.saveHash();
+        }
+    }
+
+    /** Perform the command 'stats'. */
+    void doStats(String[] unused) {
+        for (String line : _context.statsReport()) {
+            _reporter.textMsg(line);
+        }
     }
 
     /** Perform the command 'start'. */
@@ -215,7 +358,7 @@ class Game {
             Move temp = Move.parseMove(operands[0]);
             _board.makeMove(temp);
         } catch (AssertionError e) {
-            System.out.println("Ill-formed move");
+            _reporter.errMsg("Ill-formed move");
         }
     }
 
@@ -225,6 +368,7 @@ class Game {
         _board.clear();
         _whiteIsManual = true;
         _blackIsManual = false;
+        _whiteUsesMcts = _blackUsesMcts = false;
     }
 
     /** Perform the command 'set OPERANDS[0] OPERANDS[1]'. */
@@ -248,9 +392,38 @@ class Game {
      *  too large. */
     void doSeed(String[] operands) {
         try {
-            _randoms.setSeed(Long.parseLong(operands[0]));
+            _context.setSeed(Long.parseLong(operands[0]));
         } catch (NumberFormatException e) {
-            _randoms.setSeed(Long.MAX_VALUE);
+            _context.setSeed(Long.MAX_VALUE);
+        }
+    }
+
+    /** Perform the command 'depth OPERANDS[0]'. */
+    void doDepth(String[] operands) {
+        _context.setDepth(intOperand(operands[0]));
+    }
+
+    /** Perform the command 'movetime OPERANDS[0]'. */
+    void doMoveTime(String[] operands) {
+        _context.setMoveTime(intOperand(operands[0]));
+    }
+
+    /** Perform the command 'threads OPERANDS[0]'. */
+    void doThreads(String[] operands) {
+        _context.setThreads(intOperand(operands[0]));
+    }
+
+    /** Perform the command 'hash OPERANDS[0]'. */
+    void doHash(String[] operands) {
+        _context.setHash(intOperand(operands[0]));
+    }
+
+    /** Return the value of the numeral OPERAND. */
+    private static int intOperand(String operand) {
+        try {
+            return Integer.parseInt(operand);
+        } catch (NumberFormatException excp) {
+            throw error("Number too large: %s", operand);
         }
     }
 
@@ -304,6 +477,11 @@ class Game {
         _commands.put(EOF, this::doQuit);
         _commands.put(UNDO, this::doUndo);
         _commands.put(PAUSE, this::doPause);
+        _commands.put(STATS, this::doStats);
+        _commands.put(DEPTH, this::doDepth);
+        _commands.put(MOVETIME, this::doMoveTime);
+        _commands.put(THREADS, this::doThreads);
+        _commands.put(HASH, this::doHash);
     }
 
     /** Input source. */
@@ -313,10 +491,14 @@ class Game {
     private Board _board, _constBoard;
     /** Indicate which players are manual players (as opposed to AIs). */
     private boolean _whiteIsManual, _blackIsManual;
+    /** Indicate which AI players use Monte Carlo tree search. */
+    private boolean _whiteUsesMcts, _blackUsesMcts;
     /** Current game state. */
     private State _state;
     /** Used to send messages to the user. */
     private Reporter _reporter;
-    /** Source of pseudo-random numbers (used by AIs). */
-    private Random _randoms = new Random();
+    /** Random numbers, settings and timing of my computer players. */
+    private final EngineContext _context;
+    /** Cancels the choice of move in progress, or null if none. */
+    private volatile CancellationToken _search;
 }
@@ -0,0 +1,233 @@
+package qirkat;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Hosts many games in one process, one per connection to a TCP or
+ *  Unix-domain socket.  Each connection (session) gets its own Game and
+ *  Board, reads commands in the usual text form from the connection and
+ *  receives the game's messages over it, without prompts.  A quit
+ *  command or closing the connection ends only that session.
+ *
+ *  Sessions spend nearly all their time waiting for input, so each runs
+ *  on its own thread with a small stack.  The searches of all sessions'
+ *  computer players share one fixed pool of engine threads, by default
+ *  one per processor, so that the number of sessions does not affect
+ *  how many searches compete for the processors.
+ *  @author Mudabbir Khan
+ */
+public class GameServer implements AutoCloseable {
+
+    /** Default TCP port. */
+    static final int DEFAULT_PORT = 4004;
+    /** Stack size of a session thread, in bytes. */
+    static final long SESSION_STACK = 256 << 10;
+
+    /** Serve as described by ARGS:
+     *      [--port N | --unix PATH] [--engine-threads N] [--weights FILE]
+     *  listening on the loopback interface at port N (default
+     *  DEFAULT_PORT) or on the Unix-domain socket PATH. */
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT,
+            engineThreads = Runtime.getRuntime().availableProcessors();
+        String unix = null;
+        Weights weights = Weights.DEFAULT;
+        try {
+            for (int i = 0; i < args.length; i += 1) {
+                switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--unix":
+                    unix = args[++i];
+                    break;
+                case "--engine-threads":
+                    engineThreads = Integer.parseInt(args[++i]);
+                    break;
+                case "--weights":
+                    weights = Weights.load(args[++i]);
+                    break;
+                default:
+                    usage();
+                    break;
+                }
+            }
+            if (engineThreads <= 0) {
+                usage();
+            }
+            GameServer server =
+                unix == null ? tcp(port, engineThreads)
+                : unix(Paths.get(unix), engineThreads);
+            server.setWeights(weights);
+            System.out.printf("Serving on %s%n", server.address());
+            server.serve();
+        } catch (IllegalArgumentException
+                 | ArrayIndexOutOfBoundsException excp) {
+            usage();
+        } catch (GameException | IOException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Give usage message and exit. */
+    static void usage() {
+        System.err.println("Usage: java qirkat.GameServer [--port N |"
+                           + " --unix PATH] [--engine-threads N]"
+                           + " [--weights FILE]");
+        System.exit(1);
+    }
+
+    /** Return a server listening on the loopback interface at PORT (an
+     *  arbitrary free port if 0), with ENGINETHREADS engine threads. */
+    static GameServer tcp(int port, int engineThreads) throws IOException {
+        ServerSocketChannel listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                            port));
+        return new GameServer(listener, null, engineThreads);
+    }
+
+    /** Return a server listening on the Unix-domain socket PATH
+     *  (replacing any existing file there), with ENGINETHREADS engine
+     *  threads. */
+    static GameServer unix(Path path, int engineThreads)
+        throws IOException {
+        Files.deleteIfExists(path);
+        ServerSocketChannel listener =
+            ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        listener.bind(UnixDomainSocketAddress.of(path));
+        return new GameServer(listener, path, engineThreads);
+    }
+
+    /** A server accepting sessions from LISTENER, which is bound to the
+     *  Unix-domain socket at SOCKETFILE if that is not null, and running
+     *  searches on ENGINETHREADS threads. */
+    private GameServer(ServerSocketChannel listener, Path socketFile,
+                       int engineThreads) {
+        _listener = listener;
+        _socketFile = socketFile;
+        _engines = Executors.newFixedThreadPool(engineThreads,
+                                                daemons("engine", 0));
+        _sessions = Executors.newCachedThreadPool(daemons("session",
+                                                          SESSION_STACK));
+    }
+
+    /** Use WEIGHTS as the evaluation weights of new sessions' AIs. */
+    void setWeights(Weights weights) {
+        _weights = weights;
+    }
+
+    /** Return the address on which I listen. */
+    SocketAddress address() throws IOException {
+        return _listener.getLocalAddress();
+    }
+
+    /** Return the number of sessions now in progress. */
+    int sessions() {
+        return _active.get();
+    }
+
+    /** Accept and start sessions until I am closed. */
+    void serve() throws IOException {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = _listener.accept();
+            } catch (ClosedChannelException excp) {
+                return;
+            }
+            _active.incrementAndGet();
+            _sessions.execute(() -> session(channel));
+        }
+    }
+
+    /** Start serving on a background thread, returning immediately. */
+    void start() {
+        Thread acceptor = new Thread(() -> {
+            try {
+                serve();
+            } catch (IOException excp) {
+                System.err.printf("server stopped: %s%n", excp.getMessage());
+            }
+        }, "acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /** Stop accepting sessions and interrupt those in progress. */
+    @Override
+    public void close() throws IOException {
+        _listener.close();
+        _sessions.shutdownNow();
+        _engines.shutdownNow();
+        if (_socketFile != null) {
+            Files.deleteIfExists(_socketFile);
+        }
+    }
+
+    /** Play a session of games over CHANNEL, closing it at the end. */
+    private void session(SocketChannel channel) {
+        try (channel) {
+            PrintWriter out =
+                new PrintWriter(Channels.newWriter(channel,
+                                                   StandardCharsets.UTF_8));
+            CommandSource in =
+                new ReaderSource(Channels.newReader(channel,
+                                                    StandardCharsets.UTF_8),
+                                 false);
+            EngineContext context = new EngineContext();
+            context.setWeights(_weights);
+            context.setEngines(_engines);
+            new Game(new Board(), in, new WriterReporter(out), context)
+                .process();
+            out.flush();
+        } catch (IOException excp) {
+            /* Ignore IOException: the client has gone. */
+        } finally {
+            _active.decrementAndGet();
+        }
+    }
+
+    /** Return a factory for daemon threads named PREFIX-N with stacks of
+     *  STACKSIZE bytes (0 for the default size). */
+    private static ThreadFactory daemons(String prefix, long stackSize) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(null, r,
+                                  prefix + "-" + count.getAndIncrement(),
+                                  stackSize);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** Socket accepting new sessions. */
+    private final ServerSocketChannel _listener;
+    /** File of a Unix-domain socket, or null. */
+    private final Path _socketFile;
+    /** Pool shared by all sessions' computer players. */
+    private final ExecutorService _engines;
+    /** Threads running sessions. */
+    private final ExecutorService _sessions;
+    /** Number of sessions in progress. */
+    private final AtomicInteger _active = new AtomicInteger();
+    /** Evaluation weights for new sessions. */
+    private Weights _weights = Weights.DEFAULT;
+}
@@ -0,0 +1,78 @@
+package qirkat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of GameServer.
+ *  @author Mudabbir Khan
+ */
+public class GameServerTest {
+
+    /** Initial board as dumped. */
+    private static final String INIT_DUMP =
+        "===\n"
+        + "  b b b b b\n  b b b b b\n  b b - w w\n  w w w w w\n"
+        + "  w w w w w\n"
+        + "===";
+
+    /** Return everything the server sends on CLIENT until it closes the
+     *  connection. */
+    private static String readAll(SocketChannel client) throws IOException {
+        BufferedReader in =
+            new BufferedReader(Channels.newReader(client,
+                                                  StandardCharsets.UTF_8));
+        StringBuilder result = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null) {
+            result.append(line).append("\n");
+        }
+        return result.toString();
+    }
+
+    /** Send COMMANDS over CLIENT. */
+    private static void send(SocketChannel client, String commands) {
+        PrintWriter out =
+            new PrintWriter(Channels.newWriter(client,
+                                               StandardCharsets.UTF_8));
+        out.print(commands);
+        out.flush();
+    }
+
+    @Test
+    public void testSessionsAreIndependent() throws IOException {
+        try (GameServer server = GameServer.tcp(0, 1)) {
+            server.start();
+            try (SocketChannel first = SocketChannel.open(server.address());
+                 SocketChannel second =
+                     SocketChannel.open(server.address())) {
+                send(first, "d3-c3\n");
+                send(second, "dump\nquit\n");
+                assertEquals(INIT_DUMP + "\n", readAll(second));
+                send(first, "dump\n");
+                send(first, "quit\n");
+                String out = readAll(first);
+                assertTrue(out.startsWith("===\n  b b b b b\n  b b b b b\n"
+                                          + "  b b w - w\n"));
+            }
+        }
+    }
+
+    @Test
+    public void testErrorsGoToClient() throws IOException {
+        try (GameServer server = GameServer.tcp(0, 1)) {
+            server.start();
+            try (SocketChannel client = SocketChannel.open(server.address())) {
+                send(client, "frobnicate\n");
+                client.shutdownOutput();
+                assertEquals("Command not understood\n", readAll(client));
+            }
+        }
+    }
+}
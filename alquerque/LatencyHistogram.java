@@ -0,0 +1,114 @@
+package qirkat;
+
+import java.util.Arrays;
+
+/** A histogram of durations in nanoseconds, with buckets whose width
+ *  grows with their values (as in HdrHistogram), so that any recorded
+ *  value is reproduced to within about 1.6% over a range of a
+ *  nanosecond to about a minute.  Longer durations are counted in the
+ *  last bucket, although max() is exact.  Recording does not allocate.
+ *  Not thread-safe: each histogram should be recorded into by one
+ *  thread at a time.
+ *  @author Mudabbir Khan
+ */
+class LatencyHistogram {
+
+    /** Number of bits in each bucket's sub-bucket index. */
+    private static final int SUB_BITS = 7;
+    /** Number of buckets recorded exactly (values below SUB). */
+    private static final int SUB = 1 << SUB_BITS;
+    /** Number of sub-buckets in each range of values [2**k, 2**(k+1))
+     *  above SUB. */
+    private static final int HALF = SUB / 2;
+    /** Number of bits in the largest recordable value. */
+    private static final int MAX_BITS = 36;
+    /** Largest value that is not clamped. */
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+    /** Record one occurrence of VALUE nanoseconds. */
+    void record(long value) {
+        value = Math.max(0, value);
+        _counts[index(Math.min(value, MAX_VALUE))] += 1;
+        _total += 1;
+        _sum += value;
+        _max = Math.max(_max, value);
+    }
+
+    /** Add the contents of OTHER to mine. */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < _counts.length; i += 1) {
+            _counts[i] += other._counts[i];
+        }
+        _total += other._total;
+        _sum += other._sum;
+        _max = Math.max(_max, other._max);
+    }
+
+    /** Remove all recorded values. */
+    void clear() {
+        Arrays.fill(_counts, 0);
+        _total = _sum = _max = 0;
+    }
+
+    /** Return the number of values recorded. */
+    long count() {
+        return _total;
+    }
+
+    /** Return the largest value recorded (0 if none). */
+    long max() {
+        return _max;
+    }
+
+    /** Return the mean of the values recorded (0 if none). */
+    double mean() {
+        return _total == 0 ? 0 : (double) _sum / _total;
+    }
+
+    /** Return the smallest value V such that a fraction of at least Q
+     *  (0 < Q <= 1) of the values recorded are no greater than V, to
+     *  within the precision of my buckets (0 if none). */
+    long percentile(double q) {
+        if (_total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(q * _total));
+        long seen = 0;
+        for (int i = 0; i < _counts.length; i += 1) {
+            seen += _counts[i];
+            if (seen >= target) {
+                return i == _counts.length - 1
+                    ? _max : Math.min(highest(i), _max);
+            }
+        }
+        return _max;
+    }
+
+    /** Return the index of the bucket for 0 <= VALUE <= MAX_VALUE. */
+    private static int index(long value) {
+        if (value < SUB) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return SUB + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+    }
+
+    /** Return the largest value in bucket I. */
+    private static long highest(int i) {
+        if (i < SUB) {
+            return i;
+        }
+        int shift = (i - SUB) / HALF + 1;
+        long top = (i - SUB) % HALF + HALF;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /** Number of values in each bucket. */
+    private final int[] _counts = new int[index(MAX_VALUE) + 1];
+    /** Number of values recorded. */
+    private long _total;
+    /** Sum of the values recorded. */
+    private long _sum;
+    /** Largest value recorded. */
+    private long _max;
+}
@@ -0,0 +1,57 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of LatencyHistogram.
+ *  @author Mudabbir Khan
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testSmallValuesExact() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int v = 1; v <= 100; v += 1) {
+            h.record(v);
+        }
+        assertEquals(100, h.count());
+        assertEquals(50, h.percentile(0.5));
+        assertEquals(99, h.percentile(0.99));
+        assertEquals(100, h.percentile(1.0));
+        assertEquals(100, h.max());
+        assertEquals(50.5, h.mean(), 1e-9);
+    }
+
+    @Test
+    public void testPrecision() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (long v = 1000; v <= 1_000_000_000L; v = v * 3 / 2) {
+            h.clear();
+            h.record(v);
+            h.record(2 * v);
+            long p = h.percentile(0.5);
+            assertTrue(v + " reported as " + p,
+                       p >= v && p <= v + v / 60);
+        }
+    }
+
+    @Test
+    public void testPercentilesAndAdd() {
+        LatencyHistogram a = new LatencyHistogram(),
+            b = new LatencyHistogram();
+        for (int i = 0; i < 990; i += 1) {
+            a.record(1_000_000);
+        }
+        for (int i = 0; i < 10; i += 1) {
+            b.record(50_000_000);
+        }
+        a.add(b);
+        assertEquals(1000, a.count());
+        assertEquals(1_000_000, a.percentile(0.5), 1_000_000 / 60);
+        assertEquals(1_000_000, a.percentile(0.99), 1_000_000 / 60);
+        assertEquals(50_000_000, a.percentile(0.999), 50_000_000 / 60);
+        a.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, a.max());
+        assertEquals(Long.MAX_VALUE, a.percentile(1.0));
+    }
+}
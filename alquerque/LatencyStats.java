@@ -0,0 +1,123 @@
+package qirkat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static qirkat.PieceColor.*;
+
+/** Latency histograms for the computer players of one game, kept
+ *  separately for each player, each phase of the game, and each kind of
+ *  work: whole move searches, move generation, and static evaluation.
+ *  Histograms are created when first used.
+ *  @author Mudabbir Khan
+ */
+class LatencyStats {
+
+    /** The kinds of work timed. */
+    static enum Metric {
+        /** Choosing a move (one value per move). */
+        SEARCH,
+        /** Generating the moves from a position during a search. */
+        MOVEGEN,
+        /** Statically evaluating a position during a search. */
+        EVAL;
+    }
+
+    /** Phases of a game, by the number of pieces on the board. */
+    static enum Phase {
+        OPENING, MIDDLE, END;
+
+        /** Return the phase of a position with PIECES pieces. */
+        static Phase of(int pieces) {
+            if (pieces > OPENING_PIECES) {
+                return OPENING;
+            } else if (pieces >= END_PIECES) {
+                return MIDDLE;
+            } else {
+                return END;
+            }
+        }
+
+        /** Return the phase of BOARD. */
+        static Phase of(Board board) {
+            int pieces = 0;
+            for (int k = 0; k <= Move.MAX_INDEX; k += 1) {
+                if (board.get(k) != EMPTY) {
+                    pieces += 1;
+                }
+            }
+            return of(pieces);
+        }
+    }
+
+    /** Positions with more than this many pieces are in the opening. */
+    static final int OPENING_PIECES = 16;
+    /** Positions with fewer than this many pieces are in the endgame. */
+    static final int END_PIECES = 8;
+
+    /** Return the histogram for METRIC of PLAYER (WHITE or BLACK) in
+     *  PHASE. */
+    LatencyHistogram get(PieceColor player, Phase phase, Metric metric) {
+        int i = index(player, phase, metric);
+        if (_histograms[i] == null) {
+            _histograms[i] = new LatencyHistogram();
+        }
+        return _histograms[i];
+    }
+
+    /** Record that METRIC for PLAYER in PHASE took NANOS nanoseconds. */
+    void record(PieceColor player, Phase phase, Metric metric, long nanos) {
+        get(player, phase, metric).record(nanos);
+    }
+
+    /** Remove all recorded values. */
+    void clear() {
+        for (LatencyHistogram h : _histograms) {
+            if (h != null) {
+                h.clear();
+            }
+        }
+    }
+
+    /** Return a report of my non-empty histograms, one line each, with
+     *  times in microseconds. */
+    List<String> report() {
+        List<String> result = new ArrayList<>();
+        for (PieceColor player : new PieceColor[] { WHITE, BLACK }) {
+            for (Metric metric : Metric.values()) {
+                for (Phase phase : Phase.values()) {
+                    LatencyHistogram h =
+                        _histograms[index(player, phase, metric)];
+                    if (h == null || h.count() == 0) {
+                        continue;
+                    }
+                    result.add(String.format(
+                        "%s %s %s: n=%d mean=%.1f p50=%.1f p99=%.1f"
+                        + " p999=%.1f max=%.1f",
+                        player.toString().toLowerCase(),
+                        metric.toString().toLowerCase(),
+                        phase.toString().toLowerCase(), h.count(),
+                        h.mean() / 1e3, h.percentile(0.5) / 1e3,
+                        h.percentile(0.99) / 1e3, h.percentile(0.999) / 1e3,
+                        h.max() / 1e3));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the index of the histogram for PLAYER, PHASE and METRIC. */
+    private static int index(PieceColor player, Phase phase, Metric metric) {
+        return ((player == WHITE ? 0 : 1) * PHASES + phase.ordinal())
+            * METRICS + metric.ordinal();
+    }
+
+    /** Number of phases. */
+    private static final int PHASES = Phase.values().length;
+    /** Number of metrics. */
+    private static final int METRICS = Metric.values().length;
+
+    /** The histograms, indexed by index(...). */
+    private final LatencyHistogram[] _histograms =
+        new LatencyHistogram[2 * PHASES * METRICS];
+}
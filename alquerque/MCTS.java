@@ -0,0 +1,335 @@
+package qirkat;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static qirkat.PieceColor.*;
+
+/** A Player that computes its moves by Monte Carlo tree search (UCT),
+ *  using random playouts on a CompactBoard.
+ *
+ *  The search tree is kept in a pool of nodes stored as parallel arrays,
+ *  which is allocated once and reused for every move.  When more than
+ *  one thread searches, all of them share the same tree.  A thread
+ *  descending through a node charges it a "virtual loss" (extra visits
+ *  with no reward) until its playout finishes, which steers the other
+ *  threads toward different lines.  Playouts themselves allocate
+ *  nothing.
+ *  @author Mudabbir Khan
+ */
+class MCTS extends Player {
+
+    /** Default number of playouts per move. */
+    static final int DEFAULT_PLAYOUTS = 10000;
+    /** Default number of searching threads. */
+    static final int DEFAULT_THREADS = 1;
+
+    /** Number of nodes in the tree pool. */
+    private static final int POOL_SIZE = 1 << 18;
+    /** Weight of the exploration term in the UCT formula. */
+    private static final double EXPLORATION = 1.0;
+    /** Number of visits with no reward charged to each node on the path
+     *  of a playout in progress. */
+    private static final int VIRTUAL_LOSS = 3;
+    /** Maximum length of a playout, after which it is scored as a draw. */
+    private static final int MAX_PLAYOUT_PLIES = 400;
+    /** Rewards for a win and a draw (a loss is 0). */
+    private static final int WIN = 2, DRAW = 1;
+    /** Node expansion states. */
+    private static final int UNEXPANDED = 0, EXPANDING = 1, EXPANDED = 2;
+
+    /** Threads that run playouts for all MCTS players other than the
+     *  calling thread. */
+    private static final ExecutorService POOL =
+        Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "mcts");
+            t.setDaemon(true);
+            return t;
+        });
+
+    /** A new MCTS player for GAME that will play MYCOLOR, using the
+     *  default number of playouts and threads. */
+    MCTS(Game game, PieceColor myColor) {
+        this(game, myColor, DEFAULT_PLAYOUTS, DEFAULT_THREADS);
+    }
+
+    /** A new MCTS player for GAME that will play MYCOLOR, running
+     *  PLAYOUTS playouts per move spread over THREADS threads. */
+    MCTS(Game game, PieceColor myColor, int playouts, int threads) {
+        super(game, myColor);
+        _playouts = playouts;
+        _workers = new Worker[Math.max(1, threads)];
+        for (int i = 0; i < _workers.length; i += 1) {
+            _workers[i] = new Worker();
+        }
+    }
+
+    @Override
+    Move myMove() {
+        LatencyStats.Phase phase = LatencyStats.Phase.of(board());
+        Events.SearchEvent event = new Events.SearchEvent();
+        event.begin();
+        long timer = game().context().startTiming();
+        long start = System.nanoTime();
+        Move move = findMove();
+        long time = System.nanoTime() - start;
+        game().context().endTiming(timer, myColor(), phase);
+        event.end();
+        if (event.shouldCommit()) {
+            event.engine = "mcts";
+            event.side = myColor().toString();
+            event.nodes = _lastPlayouts;
+            event.move = String.valueOf(move);
+            event.commit();
+        }
+        if (game().context().timing()) {
+            System.err.printf("[%d playouts, %d playouts/sec]%n",
+                              _lastPlayouts,
+                              _lastPlayouts * 1_000_000_000L
+                              / Math.max(time, 1));
+        }
+
+        if (move == null) {
+            return null;
+        } else if (myColor() == WHITE) {
+            game().reportMove("White moves " + move + ".");
+        } else {
+            game().reportMove("Black moves " + move + ".");
+        }
+        return move;
+    }
+
+    @Override
+    void stop() {
+        _stopped = true;
+    }
+
+    @Override
+    long lastNodes() {
+        return _lastPlayouts;
+    }
+
+    /** Return a move for me from the current position, assuming there
+     *  is a move, or null if stopped first. */
+    private Move findMove() {
+        _stopped = false;
+        _root.set(board());
+        _size.set(1);
+        _state.set(0, UNEXPANDED);
+        _visits.set(0, 0);
+        _wins.set(0, 0);
+        _budget.set(Math.max(1, _playouts));
+        for (Worker w : _workers) {
+            w.seed(game().nextRandom(Integer.MAX_VALUE));
+        }
+
+        Future<?>[] helpers = new Future<?>[_workers.length - 1];
+        for (int i = 1; i < _workers.length; i += 1) {
+            helpers[i - 1] = POOL.submit(_workers[i]);
+        }
+        _workers[0].run();
+        for (Future<?> f : helpers) {
+            try {
+                f.get();
+            } catch (InterruptedException | ExecutionException excp) {
+                throw new IllegalStateException(excp);
+            }
+        }
+
+        _lastPlayouts = 0;
+        for (Worker w : _workers) {
+            _lastPlayouts += w.playouts();
+        }
+        if (_stopped || cancelled()) {
+            _stopped = false;
+            return null;
+        }
+        int best = -1;
+        for (int c = _firstChild[0]; c < _firstChild[0] + _numChildren[0];
+             c += 1) {
+            if (best == -1 || _visits.get(c) > _visits.get(best)) {
+                best = c;
+            }
+        }
+        return CompactBoard.toMove(_moves[best]);
+    }
+
+    /** Return the child of the expanded node NODE with the best UCT
+     *  value. */
+    private int select(int node) {
+        double logN = Math.log(Math.max(1, _visits.get(node)));
+        int first = _firstChild[node], best = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int c = first; c < first + _numChildren[node]; c += 1) {
+            int v = _visits.get(c);
+            if (v == 0) {
+                return c;
+            }
+            double value = _wins.get(c) / (2.0 * v)
+                + EXPLORATION * Math.sqrt(logN / v);
+            if (value > bestValue) {
+                bestValue = value;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /** Add children for all moves from BOARD to NODE, which the caller
+     *  has marked EXPANDING, using MOVES as scratch space.  Leaves NODE
+     *  unexpanded if the pool is full. */
+    private void expand(int node, CompactBoard board, long[] moves) {
+        int n = board.generate(moves);
+        int first;
+        do {
+            first = _size.get();
+            if (first + n > POOL_SIZE) {
+                _state.set(node, UNEXPANDED);
+                return;
+            }
+        } while (!_size.compareAndSet(first, first + n));
+        for (int i = 0; i < n; i += 1) {
+            _moves[first + i] = moves[i];
+            _visits.set(first + i, 0);
+            _wins.set(first + i, 0);
+            _state.set(first + i, UNEXPANDED);
+        }
+        _firstChild[node] = first;
+        _numChildren[node] = n;
+        _state.set(node, EXPANDED);
+    }
+
+    /** One searching thread's playout loop and scratch space. */
+    private class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            _count = 0;
+            while (!_stopped && !cancelled()
+                   && _budget.getAndDecrement() > 0) {
+                playout();
+                _count += 1;
+            }
+        }
+
+        /** Restart my random-number generator from SEED. */
+        void seed(long seed) {
+            _seed = (seed + 1) * 0x9E3779B97F4A7C15L;
+        }
+
+        /** Return the number of playouts I ran for the last move. */
+        int playouts() {
+            return _count;
+        }
+
+        /** Descend the tree from the root, expanding the first
+         *  unexpanded node reached, play randomly to the end of the game
+         *  and back up the result. */
+        private void playout() {
+            _board.copy(_root);
+            int node = 0, depth = 0;
+            _path[0] = 0;
+            _visits.addAndGet(0, VIRTUAL_LOSS);
+            while (depth < _path.length - 1) {
+                int state = _state.get(node);
+                if (state == UNEXPANDED
+                    && _state.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+                    expand(node, _board, _scratch);
+                    state = _state.get(node);
+                }
+                if (state != EXPANDED || _numChildren[node] == 0) {
+                    break;
+                }
+                node = select(node);
+                _board.makeMove(_moves[node]);
+                depth += 1;
+                _path[depth] = node;
+                _visits.addAndGet(node, VIRTUAL_LOSS);
+            }
+
+            PieceColor winner = finish();
+            PieceColor rootPlayer = _root.whoseMove();
+            for (int i = 0; i <= depth; i += 1) {
+                PieceColor mover =
+                    i % 2 == 1 ? rootPlayer : rootPlayer.opposite();
+                int reward =
+                    winner == EMPTY ? DRAW : winner == mover ? WIN : 0;
+                _wins.addAndGet(_path[i], reward);
+                _visits.addAndGet(_path[i], 1 - VIRTUAL_LOSS);
+            }
+        }
+
+        /** Play random moves on _board until the game ends, and return
+         *  the winner (EMPTY if the playout is cut off). */
+        private PieceColor finish() {
+            for (int ply = 0; ply < MAX_PLAYOUT_PLIES; ply += 1) {
+                int n = _board.generate(_scratch);
+                if (n == 0) {
+                    return _board.whoseMove().opposite();
+                }
+                _board.makeMove(_scratch[nextInt(n)]);
+            }
+            return EMPTY;
+        }
+
+        /** Return a pseudo-random integer in 0 .. N-1 (xorshift). */
+        private int nextInt(int n) {
+            _seed ^= _seed << 13;
+            _seed ^= _seed >>> 7;
+            _seed ^= _seed << 17;
+            return (int) ((_seed >>> 33) % n);
+        }
+
+        /** Position being played out. */
+        private final CompactBoard _board = new CompactBoard();
+        /** Buffer for generated moves. */
+        private final long[] _scratch = new long[CompactBoard.MAX_MOVES];
+        /** Nodes on the path from the root in the current playout. */
+        private final int[] _path = new int[MAX_PLAYOUT_PLIES];
+        /** Random-number generator state. */
+        private long _seed;
+        /** Number of playouts run for the current move. */
+        private int _count;
+    }
+
+    /** Number of playouts to run per move. */
+    private final int _playouts;
+    /** Searching threads; the first runs on the caller's thread. */
+    private final Worker[] _workers;
+    /** True when the search for the current move should stop. */
+    private volatile boolean _stopped;
+    /** Number of playouts still to be started for the current move. */
+    private final AtomicInteger _budget = new AtomicInteger();
+    /** Number of playouts run for the last move. */
+    private int _lastPlayouts;
+    /** The position being searched. */
+    private final CompactBoard _root = new CompactBoard();
+
+    /* The node pool.  Node 0 is the root, and the children of each
+     * expanded node occupy a contiguous block.  The plain arrays are
+     * written only by the thread that expands a node, before it sets
+     * the node's state to EXPANDED. */
+
+    /** Number of nodes in use. */
+    private final AtomicInteger _size = new AtomicInteger();
+    /** The move leading to each node. */
+    private final long[] _moves = new long[POOL_SIZE];
+    /** Index of the first child and number of children of each node. */
+    private final int[]
+        _firstChild = new int[POOL_SIZE],
+        _numChildren = new int[POOL_SIZE];
+    /** Expansion state of each node. */
+    private final AtomicIntegerArray _state =
+        new AtomicIntegerArray(POOL_SIZE);
+    /** Visits to each node, including virtual losses in progress. */
+    private final AtomicIntegerArray _visits =
+        new AtomicIntegerArray(POOL_SIZE);
+    /** Total reward (WIN, DRAW or 0 per playout) to the player who moved
+     *  into each node. */
+    private final AtomicIntegerArray _wins =
+        new AtomicIntegerArray(POOL_SIZE);
+}
@@ -1,9 +1,15 @@
 package qirkat;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PipedReader;
 import java.io.PipedWriter;
+import java.util.concurrent.Executors;
 
 /** The main program for Qirkat.
  *  @author Mudabbir Khan
@@ -12,19 +18,82 @@ import java.io.PipedWriter;
 public class Main {
 
     /** Run Qirkat game.  Use display if ARGS[k] is '--display', timing
-     *  if ARGS[k] is "--timing". */
+     *  if ARGS[k] is "--timing", load the AI's evaluation weights
+     *  from ARGS[k+1] if ARGS[k] is "--weights", write statistics to
+     *  file ARGS[k+1] on quitting if ARGS[k] is "--stats", and run in
+     *  batch mode (for piped input: no banner or prompts, large buffers)
+     *  if ARGS[k] is "--batch".  "--depth N", "--movetime MSEC",
+     *  "--threads N" and "--hash MB" have the effects of the commands of
+     *  the same names, and "--movelimit MSEC" makes AIs play the best
+     *  move found so far after MSEC milliseconds.  "--hashfile FILE"
+     *  loads the AIs' transposition table (16 MB unless set by
+     *  "--hash") from FILE, if it exists, and saves it there on
+     *  quitting.  "--pipe" has the display send
+     *  commands to the game as text through a pipe rather than posting
+     *  them to a queue.  "--engine" speaks the engine protocol of
+     *  EngineProtocol on the standard input and output instead of
+     *  playing a game. */
     public static void main(String[] args) {
-        boolean useGUI;
-        System.out.println("CS61B Qirkat! Version 2.0");
-        useGUI = false;
-        _timing = false;
+        boolean useGUI, batch, pipe, engine;
+        useGUI = batch = pipe = engine = false;
+        String hashFile = null;
+        EngineContext context = new EngineContext();
         for (int i = 0; i < args.length; i += 1) {
             switch (args[i]) {
             case "--display":
                 useGUI = true;
                 break;
+            case "--batch":
+                batch = true;
+                break;
+            case "--pipe":
+                pipe = true;
+                break;
+            case "--engine":
+                engine = true;
+                break;
+            case "--stats":
+                if (i + 1 == args.length) {
+                    usage();
+                }
+                context.setStatsFile(args[++i]);
+                break;
             case "--timing":
-                _timing = true;
+                context.setTiming(true);
+                break;
+            case "--hashfile":
+                if (i + 1 == args.length) {
+                    usage();
+                }
+                hashFile = args[++i];
+                break;
+            case "--depth":
+            case "--movetime":
+            case "--movelimit":
+            case "--threads":
+            case "--hash":
+                if (i + 1 == args.length) {
+                    usage();
+                }
+                try {
+                    setting(context, args[i], args[++i]);
+                } catch (NumberFormatException excp) {
+                    usage();
+                } catch (GameException excp) {
+                    System.err.println(excp.getMessage());
+                    System.exit(1);
+                }
+                break;
+            case "--weights":
+                if (i + 1 == args.length) {
+                    usage();
+                }
+                try {
+                    context.setWeights(Weights.load(args[++i]));
+                } catch (GameException excp) {
+                    System.err.println(excp.getMessage());
+                    System.exit(1);
+                }
                 break;
             default:
                 usage();
@@ -32,89 +101,141 @@ public class Main {
             }
         }
 
+        if (hashFile != null) {
+            try {
+                context.setHashFile(hashFile);
+            } catch (GameException excp) {
+                System.err.println(excp.getMessage());
+            }
+        }
+
+        if (engine) {
+            runEngine(context);
+        }
+        if (!batch) {
+            System.out.println("CS61B Qirkat! Version 2.0");
+        }
+
         Game game;
         Board board = new Board();
+        AsyncReporter output = null;
 
         game = null;
         if (useGUI) {
             try {
-
-                PipedWriter writer = new PipedWriter();
-                GUI display = new GUI("Qirkat", board, writer);
-                game = new Game(board,
-                                new ReaderSource(new PipedReader(writer,
-                                                                 BUFFER_LEN),
-                                                 false),
-                                display);
+                GUI display;
+                CommandSource commands;
+                if (pipe) {
+                    PipedWriter writer = new PipedWriter();
+                    display = new GUI("Qirkat", board, writer);
+                    commands =
+                        new ReaderSource(new PipedReader(writer, BUFFER_LEN),
+                                         false);
+                } else {
+                    CommandQueue queue = new CommandQueue();
+                    display = new GUI("Qirkat", board, queue);
+                    commands = queue;
+                }
+                game = new Game(board, commands, display, context);
+                display.setGame(game);
+                context.setEngines(Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "ai-worker");
+                    t.setDaemon(true);
+                    return t;
+                }));
+                context.setProgress(true);
                 display.display(true);
             } catch (IOException excp) {
                 System.err.printf("Could not connect to display.%n");
                 System.exit(1);
             }
+        } else if (batch) {
+            output = new AsyncReporter(
+                new OutputStreamWriter(
+                    new BufferedOutputStream(
+                        new FileOutputStream(FileDescriptor.out),
+                        BATCH_BUFFER_LEN)), BATCH_BUFFER_LEN);
+            game = new Game(board,
+                            new ReaderSource(
+                                new InputStreamReader(
+                                    new BufferedInputStream(
+                                        System.in, BATCH_BUFFER_LEN)),
+                                false),
+                            output, context);
         } else {
+            output = new AsyncReporter(new OutputStreamWriter(System.out));
             game = new Game(board,
                             new ReaderSource(new InputStreamReader(System.in),
-                                             true),
-                            new TextReporter());
+                                             output),
+                            output, context);
         }
         game.process();
-    }
-
-    /** Give usage message and exit. */
-    static void usage() {
-        System.err.println("Usage: java qirkat.Main [--display] [--timing]"
-                           + " [--strict]");
-        System.exit(1);
-    }
-
-    /* TIMING */
-
-    /** Start timing an operation. */
-    static void startTiming() {
-        if (_timing) {
-            _startTime = System.currentTimeMillis();
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException excp) {
+                System.exit(1);
+            }
         }
+        System.exit(0);
     }
 
-    /** End the timing started with the last call to startTiming().
-     *  Report result if we are timing. */
-    static void endTiming() {
-        if (_timing) {
-            long time = System.currentTimeMillis() - _startTime;
-            System.err.printf("[%d msec]%n", time);
-            _maxTime = Math.max(_maxTime, time);
-            _totalTime += time;
-            _numTimedOps += 1;
+    /** Play as an engine controlled through the standard input and
+     *  output by the protocol of EngineProtocol, with the settings in
+     *  CONTEXT, and exit at the end of input. */
+    private static void runEngine(EngineContext context) {
+        try {
+            new EngineProtocol(new InputStreamReader(System.in),
+                               new OutputStreamWriter(System.out),
+                               context).run();
+            context.saveHash();
+        } catch (IOException | GameException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
         }
+        System.exit(0);
     }
 
-    /** Report total time statistics, if timing. */
-    static void reportTotalTimes() {
-        if (_timing && _numTimedOps > 0) {
-            System.err.printf("[Total time: %d msec for %d operations. "
-                              + "Avg: %d msec/operation. "
-                              + "Max: %d msec]%n", _totalTime,
-                              _numTimedOps, _totalTime / _numTimedOps,
-                              _maxTime);
+    /** Apply the engine setting FLAG (such as "--depth") with value
+     *  VALUE to CONTEXT. */
+    private static void setting(EngineContext context, String flag,
+                                String value) {
+        int val = Integer.parseInt(value);
+        switch (flag) {
+        case "--depth":
+            context.setDepth(val);
+            break;
+        case "--movetime":
+            context.setMoveTime(val);
+            break;
+        case "--movelimit":
+            context.setMoveLimit(val);
+            break;
+        case "--threads":
+            context.setThreads(val);
+            break;
+        default:
+            context.setHash(val);
+            break;
         }
     }
 
-    /** True iff AIs should time. */
-    private static boolean _timing;
-
-    /** Accumulated time. */
-    private static long _totalTime;
-
-    /** Last start time. */
-    private static long _startTime;
-
-    /** Number of operations timed. */
-    private static int _numTimedOps;
-
-    /** Maximum operation time. */
-    private static long _maxTime;
+    /** Give usage message and exit. */
+    static void usage() {
+        System.err.println("Usage: java qirkat.Main [--display] [--pipe]"
+                           + " [--engine]"
+                           + " [--timing]"
+                           + " [--weights FILE] [--stats FILE] [--batch]"
+                           + " [--depth N] [--movetime MSEC]"
+                           + " [--movelimit MSEC] [--threads N]"
+                           + " [--hash MB] [--hashfile FILE] [--strict]");
+        System.exit(1);
+    }
 
     /** Size of the buffer for reading commands from a GUI (bytes). */
     private static final int BUFFER_LEN = 128;
 
+    /** Size of the input and output buffers in batch mode (bytes). */
+    private static final int BATCH_BUFFER_LEN = 1 << 16;
+
 }
@@ -1,5 +1,7 @@
 package qirkat;
 
+import java.util.concurrent.CompletableFuture;
+
 /** A Player that receives its moves from its Game's getMoveCmnd method.
  *  @author Mudabbir Khan
  */
@@ -22,6 +24,15 @@ class Manual extends Player {
         }
     }
 
+    /** Reads my move from my game's input on this thread (so that the
+     *  game's commands are executed on its own thread), ignoring
+     *  DEADLINE and TOKEN. */
+    @Override
+    CompletableFuture<Move> requestMove(long deadline,
+                                        CancellationToken token) {
+        return CompletableFuture.completedFuture(myMove());
+    }
+
     /** Identifies the player serving as a source of input commands. */
     private String _prompt;
 }
@@ -2,8 +2,7 @@ package qirkat;
 
 import static java.lang.Math.abs;
 import java.util.Formatter;
-import java.util.HashMap;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
@@ -39,23 +38,15 @@ class Move {
      * one. Moves themselves are immutable, and for any possible move,
      * there is exactly one object of type Move. */
 
-    /* To avoid creating Move objects that are not needed, we maintain a
-     * a static variable, _staged containing a Move object.  The move
-     * factory methods then sets the fields of this object before looking to
-     * to see if there is already a Move object with the same parameters.
-     * If there is, the move methods will simply return it, thus allowing
-     * _staged to be reused on the next call without having to create a
-     * new Move object.  Otherwise, we use the _staged object itself as the
-     * new Move, and set the variable to null so that we create a new
-     * Move on the next call to move. There is a drawback: since there
-     * is at most one _staged object at any time, at most one call to move
-     * may execute simultaneously.  Otherwise, two the methods may attempt
-     * to use the same Move object for two different Moves, which clearly
-     * will not work.  Therefore, we indicate in the comments that a number
-     * of the operations are not "thread safe". Fortunately, you'll not run
-     * into this problem as long as you don't do anything fancy (such as
-     * trying to make your AI a parallel program).
-     */
+    /* Every Move with no further jumps is created when the class is
+     * loaded and kept in the table SIMPLE_MOVES.  A multi-jump move is
+     * found from its tail (the move for its second and subsequent
+     * jumps): each jump keeps a table, filled in on demand, of the jumps
+     * that end where it begins and precede it.  Entries are installed by
+     * compare-and-set, so that the factory needs no lock and there is
+     * still exactly one Move object for each move, however many games
+     * are generating moves at once.  There is no other mutable static
+     * state. */
 
     /** The move constructor, made private to prevent its use except in
      *  this class. */
@@ -63,29 +54,37 @@ class Move {
     }
 
     /** A factory method that returns a Move from COL0 ROW0 to COL1 ROW1,
-     *  followed by NEXTJUMP, if this move is a jump. Assumes the column
-     *  and row designations are valid and that NEXTJUMP is null for a
-     *  non-capturing move.  Not thread-safe. */
+     *  followed by NEXTJUMP, if this move is a jump.  Throws
+     *  IllegalArgumentException if a square is off the board, or if
+     *  NEXTJUMP is not null and this is not a jump ending where NEXTJUMP
+     *  begins. */
     static Move move(char col0, char row0, char col1, char row1,
                      Move nextJump) {
-        if (_staged == null) {
-            _staged = new Move();
+        if (!validSquare(col0, row0) || !validSquare(col1, row1)) {
+            throw new IllegalArgumentException("bad square");
         }
-        _staged.set(col0, row0, col1, row1, nextJump);
-        if (_staged.isJump() && nextJump != null && !nextJump.isJump()) {
-            throw new IllegalArgumentException("bad jump");
-        } else if (!_staged.isJump() && nextJump != null) {
+        int from = index(col0, row0), to = index(col1, row1);
+        if (nextJump == null) {
+            return SIMPLE_MOVES[from][to];
+        }
+        if (abs(col0 - col1) <= 1 && abs(row0 - row1) <= 1
+            || !nextJump.isJump() || to != nextJump.fromIndex()) {
             throw new IllegalArgumentException("bad jump");
         }
-        Move result = _internedMoves.computeIfAbsent(_staged, IDENTITY);
-        if (result == _staged) {
-            _staged = null;
+        AtomicReferenceArray<Move> prefixes = nextJump._prefixes;
+        Move result = prefixes.get(from);
+        if (result == null) {
+            Move fresh = new Move();
+            fresh.set(col0, row0, col1, row1, nextJump);
+            result = prefixes.compareAndExchange(from, null, fresh);
+            if (result == null) {
+                result = fresh;
+            }
         }
         return result;
     }
 
-    /** Return a single move or jump from (COL0, ROW0) to (COL1, ROW1).
-     *  Not thread-safe. */
+    /** Return a single move or jump from (COL0, ROW0) to (COL1, ROW1). */
     static Move move(char col0, char row0, char col1, char row1) {
         return move(col0, row0, col1, row1, null);
     }
@@ -353,6 +352,8 @@ class Move {
         _toIndex = (byte) index(col1, row1);
         _isJump = abs(col0 - col1) > 1 || abs(row0 - row1) > 1;
         _nextJump = nextJump;
+        _prefixes = _isJump ? new AtomicReferenceArray<>(MAX_INDEX + 1)
+            : null;
         assert (_isJump
                 && (nextJump == null
                     || (nextJump.isJump()
@@ -374,17 +375,25 @@ class Move {
      *  initial jump. */
     private Move _nextJump;
 
-    /* Used for the Move factory. */
-
-    /** Holds the next Move object to be added to _internedMoves.
-     *  The factory method move tentatively fills it in, and then returns
-     *  it if it is unique (resetting _staged to null). */
-    private static Move _staged;
+    /** For a jump, the longer jumps (indexed by starting square) whose
+     *  later jumps are this one, filled in as they are created. */
+    private AtomicReferenceArray<Move> _prefixes;
 
-    /** The set of all distinct moves generated so far. */
-    private static HashMap<Move, Move> _internedMoves = new HashMap<>();
+    /* Used for the Move factory. */
 
-    /** The identity function on Moves. */
-    static final Function<Move, Move> IDENTITY = k -> k;
+    /** All moves without further jumps, indexed by starting and ending
+     *  square. */
+    private static final Move[][] SIMPLE_MOVES =
+        new Move[MAX_INDEX + 1][MAX_INDEX + 1];
+
+    static {
+        for (int k0 = 0; k0 <= MAX_INDEX; k0 += 1) {
+            for (int k1 = 0; k1 <= MAX_INDEX; k1 += 1) {
+                SIMPLE_MOVES[k0][k1] = new Move();
+                SIMPLE_MOVES[k0][k1].set(col(k0), row(k0), col(k1), row(k1),
+                                         null);
+            }
+        }
+    }
 
 }
@@ -0,0 +1,111 @@
+package qirkat;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A fixed-size, direct-mapped cache of the legal moves generated for
+ *  positions, indexed by the positions' 64-bit keys (see Board.key()).
+ *  Each position has one slot, selected by the low-order bits of its
+ *  key; storing a position replaces whatever occupied its slot.
+ *
+ *  Each slot refers to an immutable entry holding the full key and the
+ *  moves, and is replaced as a whole, so that several threads may look
+ *  up and store positions at once without locking: a reader sees either
+ *  a complete old entry or a complete new one.
+ *
+ *  Since a position's moves do not depend on the game it occurs in,
+ *  caches may share their entries (see MoveCache(MoveCache)), each
+ *  keeping its own counts of hits and misses.  The engine contexts of
+ *  all games in a process share the entries of SHARED.
+ *  @author Mudabbir Khan
+ */
+class MoveCache {
+
+    /** The cache (of 65536 entries) whose entries all engine contexts
+     *  share. */
+    static final MoveCache SHARED = new MoveCache(16);
+
+    /** A cache of 2**BITS entries, 0 <= BITS <= 30. */
+    MoveCache(int bits) {
+        assert 0 <= bits && bits <= 30;
+        _entries = new Entry[1 << bits];
+        _mask = _entries.length - 1;
+    }
+
+    /** A cache sharing the entries of CACHE, but with its own counts of
+     *  hits and misses, initially 0. */
+    MoveCache(MoveCache cache) {
+        _entries = cache._entries;
+        _mask = cache._mask;
+    }
+
+    /** Return the moves stored for the position whose key is KEY, or
+     *  null if none are.  The result must not be modified. */
+    Move[] get(long key) {
+        Entry entry = _entries[(int) key & _mask];
+        if (entry != null && entry.key == key) {
+            _hits.increment();
+            return entry.moves;
+        }
+        _misses.increment();
+        return null;
+    }
+
+    /** Store MOVES, which must not be modified afterwards, as the moves
+     *  of the position whose key is KEY. */
+    void put(long key, Move[] moves) {
+        _entries[(int) key & _mask] = new Entry(key, moves);
+    }
+
+    /** Return the number of entries I can hold. */
+    int capacity() {
+        return _entries.length;
+    }
+
+    /** Return the number of calls to get that found their position. */
+    long hits() {
+        return _hits.sum();
+    }
+
+    /** Return the number of calls to get that did not. */
+    long misses() {
+        return _misses.sum();
+    }
+
+    /** Remove all entries (from every cache sharing them) and reset my
+     *  counts. */
+    void clear() {
+        Arrays.fill(_entries, null);
+        _hits.reset();
+        _misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        long hits = hits(), total = hits + misses();
+        return String.format("hits=%d misses=%d (%.1f%% hits)", hits,
+                             total - hits,
+                             total == 0 ? 0.0 : 100.0 * hits / total);
+    }
+
+    /** The moves of one position. */
+    private static final class Entry {
+        /** An entry for MOVES, the moves of the position with key KEY. */
+        Entry(long key, Move[] moves) {
+            this.key = key;
+            this.moves = moves;
+        }
+
+        /** The key of my position. */
+        final long key;
+        /** The legal moves from my position. */
+        final Move[] moves;
+    }
+
+    /** The slots, each null or the entry last stored in it. */
+    private final Entry[] _entries;
+    /** Mask selecting the slot index from a key. */
+    private final int _mask;
+    /** Counts of successful and unsuccessful lookups. */
+    private final LongAdder _hits = new LongAdder(), _misses = new LongAdder();
+}
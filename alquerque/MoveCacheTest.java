@@ -0,0 +1,91 @@
+package qirkat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of MoveCache and of its use by Board.
+ *  @author Mudabbir Khan
+ */
+public class MoveCacheTest {
+
+    @Test
+    public void testGetAndPut() {
+        MoveCache cache = new MoveCache(4);
+        assertEquals(16, cache.capacity());
+        Move[] moves = { Move.parseMove("c2-c3"), Move.parseMove("b2-b3") };
+        long key = 0x123456789abcdefL;
+        assertNull(cache.get(key));
+        cache.put(key, moves);
+        assertSame(moves, cache.get(key));
+        assertNull(cache.get(key + cache.capacity()));
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+        cache.put(key + cache.capacity(), new Move[0]);
+        assertNull(cache.get(key));
+        cache.clear();
+        assertEquals(0, cache.hits() + cache.misses());
+        assertNull(cache.get(key + cache.capacity()));
+    }
+
+    @Test
+    public void testBoardMoves() {
+        Board b = new Board();
+        b.makeMove(Move.parseMove("c2-c3"));
+        b.makeMove(Move.parseMove("c4-c2"));
+        assertNull(b.moveCache());
+        ArrayList<Move> moves = b.getMoves();
+        MoveCache cache = new MoveCache(8);
+        b.setMoveCache(cache);
+        assertEquals(moves, b.getMoves());
+        assertEquals(0, cache.hits());
+        assertEquals(1, cache.misses());
+        Board copy = new Board(b);
+        assertSame(cache, copy.moveCache());
+        assertEquals(moves, copy.getMoves());
+        assertEquals(1, cache.hits());
+        assertEquals(Arrays.asList(Move.parseMove("c1-c3")), moves);
+        for (Move mov : moves) {
+            assertTrue(b.legalMove(mov));
+            assertTrue(b.isLegal(mov));
+        }
+        assertFalse(b.isLegal(Move.parseMove("b1-d3")));
+        assertFalse(b.isLegal(Move.parseMove("a2-a3")));
+    }
+
+    @Test
+    public void testGameCache() {
+        Board b = new Board();
+        EngineContext context = new EngineContext();
+        new Game(b, prompt -> null, new EngineGame.SilentReporter(),
+                 context);
+        assertSame(context.moveCache(), b.moveCache());
+        assertSame(context.moveCache(), new Board(b.constantView())
+                   .moveCache());
+        b.makeMove(Move.parseMove("c2-c3"));
+        b.makeMove(Move.parseMove("c4-c2"));
+        long hits = context.moveCache().hits();
+        EngineContext other = new EngineContext();
+        assertNotSame(context.moveCache(), other.moveCache());
+        Board b2 = new Board(b);
+        b2.setMoveCache(other.moveCache());
+        assertEquals(b.getMoves(), b2.getMoves());
+        assertEquals(hits + 1, context.moveCache().hits());
+        assertEquals(1, other.moveCache().hits());
+        assertEquals(0, other.moveCache().misses());
+    }
+
+    @Test
+    public void testSharedEntries() {
+        MoveCache cache = new MoveCache(4), view = new MoveCache(cache);
+        Move[] moves = { Move.parseMove("c2-c3") };
+        cache.put(7, moves);
+        assertSame(moves, view.get(7));
+        assertNull(view.get(8));
+        assertEquals(1, view.hits());
+        assertEquals(1, view.misses());
+        assertEquals(0, cache.hits() + cache.misses());
+    }
+}
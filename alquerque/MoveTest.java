@@ -41,4 +41,24 @@ public class MoveTest {
         assertEquals("a3-a5-c3", parseMove("a3-a5-c3").toString());
         assertEquals("a3-a5-c3-e1", parseMove("a3-a5-c3-e1").toString());
     }
+
+    @Test
+    public void testInterning() throws InterruptedException {
+        Move[] found = new Move[4];
+        Thread[] threads = new Thread[found.length];
+        for (int i = 0; i < threads.length; i += 1) {
+            int k = i;
+            threads[i] = new Thread(() -> {
+                found[k] = parseMove("e1-c3-a5-a3-c1");
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (Move m : found) {
+            assertSame(parseMove("e1-c3-a5-a3-c1"), m);
+        }
+        assertSame(move('a', '3', 'b', '2'), parseMove("a3-b2"));
+    }
 }
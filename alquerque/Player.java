@@ -1,5 +1,8 @@
 package qirkat;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /** A generic Qirkat Player.
  *  @author Mudabbir Khan
  */
@@ -31,8 +34,57 @@ abstract class Player {
      *  board.whoseMove() == myColor and that !board.gameOver(). */
     abstract Move myMove();
 
+    /** Start choosing a legal move for me, returning its future value.
+     *  The move is wanted by DEADLINE (in the units of System.nanoTime(),
+     *  or 0 if there is no deadline); cancelling TOKEN abandons the
+     *  choice, so that the value is null.  Makes the same assumptions as
+     *  myMove.  By default, chooses the move with myMove on my game's
+     *  engine pool, or on this thread if there is none, and ignores
+     *  DEADLINE.  While myMove runs, cancelled() reports whether TOKEN
+     *  has been cancelled; players that search should check it.
+     *  Cancelling TOKEN after the move is chosen has no effect. */
+    CompletableFuture<Move> requestMove(long deadline,
+                                        CancellationToken token) {
+        Executor engines = _game.context().engines();
+        return CompletableFuture.supplyAsync(() -> {
+            if (token.isCancelled()) {
+                return null;
+            }
+            _request = token;
+            try {
+                return myMove();
+            } finally {
+                _request = null;
+            }
+        }, engines == null ? Runnable::run : engines);
+    }
+
+    /** Return true iff the request (see requestMove) for which myMove is
+     *  choosing a move has been cancelled.  False if there is none. */
+    boolean cancelled() {
+        CancellationToken request = _request;
+        return request != null && request.isCancelled();
+    }
+
+    /** Stop the search for my move in progress, if any, as soon as
+     *  possible, so that myMove returns null.  Has no effect on later
+     *  searches.  May be called from any thread.  By default, does
+     *  nothing. */
+    void stop() {
+    }
+
+    /** Return the number of positions examined in choosing my last move
+     *  (playouts, for an MCTS player; 0 for players that do not
+     *  search). */
+    long lastNodes() {
+        return 0;
+    }
+
     /** The game I am playing in. */
     private final Game _game;
     /** The color of my pieces. */
     private final PieceColor _myColor;
+    /** The cancellation token of the request for my move in progress,
+     *  or null. */
+    private volatile CancellationToken _request;
 }
@@ -0,0 +1,114 @@
+package qirkat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static qirkat.PieceColor.*;
+
+/** The binary format of recorded training positions.
+ *
+ *  A shard file consists of a HEADER_SIZE-byte header (the int MAGIC,
+ *  the format VERSION, the record SIZE and a reserved int) followed by
+ *  records of SIZE bytes each, all little-endian:
+ *
+ *      offset  type   contents
+ *        0     int    mask of white pieces
+ *        4     int    mask of black pieces
+ *        8     int    mask of pieces that may not move left
+ *       12     int    mask of pieces that may not move right
+ *       16     short  search score (positive favors white), clamped
+ *       18     short  ply number
+ *       20     byte   side to move (0 white, 1 black)
+ *       21     byte   result (0 black won, 1 draw, 2 white won)
+ *       22     short  reserved (0)
+ *
+ *  The methods here read and write records in place in ByteBuffers, so
+ *  that neither writing nor reading a record allocates anything.
+ *  @author Mudabbir Khan
+ */
+class PositionRecord {
+
+    /** Size of a record in bytes. */
+    static final int SIZE = 24;
+    /** Size of a shard header in bytes. */
+    static final int HEADER_SIZE = 16;
+    /** Identifies shard files ("QRKT"). */
+    static final int MAGIC = 0x51524B54;
+    /** Current format version. */
+    static final int VERSION = 1;
+    /** Byte order of shard files. */
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /** Result codes. */
+    static final int BLACK_WON = 0, DRAW = 1, WHITE_WON = 2;
+
+    /** Offsets of fields within a record. */
+    private static final int
+        WHITE_OFFSET = 0, BLACK_OFFSET = 4, NO_LEFT_OFFSET = 8,
+        NO_RIGHT_OFFSET = 12, SCORE_OFFSET = 16, PLY_OFFSET = 18,
+        SIDE_OFFSET = 20, RESULT_OFFSET = 21;
+
+    /** Not instantiable. */
+    private PositionRecord() {
+    }
+
+    /** Write a shard header at the current position of BUF, which must
+     *  use ORDER. */
+    static void putHeader(ByteBuffer buf) {
+        buf.putInt(MAGIC).putInt(VERSION).putInt(SIZE).putInt(0);
+    }
+
+    /** Return true iff BUF (in ORDER) starts with a valid header. */
+    static boolean checkHeader(ByteBuffer buf) {
+        return buf.limit() >= HEADER_SIZE && buf.getInt(0) == MAGIC
+            && buf.getInt(4) == VERSION && buf.getInt(8) == SIZE;
+    }
+
+    /** Write a record at the current position of BUF (which must use
+     *  ORDER) for the position with pieces WHITE and BLACK, restrictions
+     *  NOLEFT and NORIGHT and SIDE to move at ply PLY, with search
+     *  score SCORE and RESULT (one of the result codes). */
+    static void put(ByteBuffer buf, int white, int black, int noLeft,
+                    int noRight, PieceColor side, int score, int ply,
+                    int result) {
+        buf.putInt(white).putInt(black).putInt(noLeft).putInt(noRight);
+        buf.putShort((short) Math.max(Short.MIN_VALUE,
+                                      Math.min(Short.MAX_VALUE, score)));
+        buf.putShort((short) Math.min(Short.MAX_VALUE, ply));
+        buf.put((byte) (side == WHITE ? 0 : 1));
+        buf.put((byte) result);
+        buf.putShort((short) 0);
+    }
+
+    /** Set POS to the position in the record at byte offset OFFSET of
+     *  BUF (which must use ORDER). */
+    static void get(ByteBuffer buf, int offset, CompactBoard pos) {
+        pos.set(buf.getInt(offset + WHITE_OFFSET),
+                buf.getInt(offset + BLACK_OFFSET),
+                buf.getInt(offset + NO_LEFT_OFFSET),
+                buf.getInt(offset + NO_RIGHT_OFFSET),
+                buf.get(offset + SIDE_OFFSET) == 0 ? WHITE : BLACK);
+    }
+
+    /** Return the search score in the record at OFFSET of BUF. */
+    static int score(ByteBuffer buf, int offset) {
+        return buf.getShort(offset + SCORE_OFFSET);
+    }
+
+    /** Return the ply number in the record at OFFSET of BUF. */
+    static int ply(ByteBuffer buf, int offset) {
+        return buf.getShort(offset + PLY_OFFSET);
+    }
+
+    /** Return the result code in the record at OFFSET of BUF. */
+    static int result(ByteBuffer buf, int offset) {
+        return buf.get(offset + RESULT_OFFSET);
+    }
+
+    /** Return the result code for a game won by WINNER (EMPTY for a
+     *  draw). */
+    static int resultCode(PieceColor winner) {
+        return winner == WHITE ? WHITE_WON
+            : winner == BLACK ? BLACK_WON : DRAW;
+    }
+}
@@ -17,6 +17,14 @@ class ReaderSource implements CommandSource {
         _shouldPrompt = shouldPrompt;
     }
 
+    /** A new source that reads from INPUT and displays prompts through
+     *  PROMPTS.  PROMPTS is flushed only when reading would block, so
+     *  that scripted input does not cause a flush for each line. */
+    ReaderSource(Reader input, Reporter prompts) {
+        this(input, true);
+        _prompts = prompts;
+    }
+
     @Override
     public String getLine(String prompt) {
         if (_input == null) {
@@ -24,7 +32,12 @@ class ReaderSource implements CommandSource {
         }
 
         try {
-            if (_shouldPrompt) {
+            if (_prompts != null) {
+                _prompts.promptMsg(prompt);
+                if (!_input.ready()) {
+                    _prompts.flush();
+                }
+            } else if (_shouldPrompt) {
                 System.out.print(prompt);
                 System.out.flush();
             }
@@ -42,5 +55,7 @@ class ReaderSource implements CommandSource {
     private BufferedReader _input;
     /** True if we request a prompt for each getLine. */
     private boolean _shouldPrompt;
+    /** Destination of prompts, or null for the standard output. */
+    private Reporter _prompts;
 }
 
@@ -18,4 +18,28 @@ interface Reporter {
      *  formed from FORMAT and OPERANDS as for String.format. */
     void moveMsg(String format, Object... operands);
 
+    /** Display LINE, a line of help or other plain text.  By default,
+     *  prints it on the standard output. */
+    default void textMsg(String line) {
+        System.out.println(line);
+    }
+
+    /** Display a message describing the progress of a search in
+     *  progress, formed from FORMAT and OPERANDS as for String.format.
+     *  By default, displays nothing. */
+    default void progressMsg(String format, Object... operands) {
+    }
+
+    /** Display PROMPT, a prompt for input, without ending the line.  By
+     *  default, prints it on the standard output. */
+    default void promptMsg(String prompt) {
+        System.out.print(prompt);
+    }
+
+    /** Make sure that all messages so far will be displayed promptly.  By
+     *  default, flushes the standard output. */
+    default void flush() {
+        System.out.flush();
+    }
+
 }
@@ -0,0 +1,195 @@
+package qirkat;
+
+import java.util.Arrays;
+
+/** Counts of the work done by alpha-beta searches: positions visited,
+ *  static evaluations, cutoffs, transposition table probes and hits, the
+ *  deepest ply reached, and the time taken by each depth of iterative
+ *  deepening.  One search updates its
+ *  own SearchStats; totals over several searches are formed with add().
+ *  Not thread-safe.
+ *  @author Mudabbir Khan
+ */
+class SearchStats {
+
+    /** Largest depth whose iteration times are kept. */
+    static final int MAX_TIMED_DEPTH = 64;
+
+    /** Record a visit to a position at PLY plies from the root. */
+    void node(int ply) {
+        _nodes += 1;
+        if (ply > _maxPly) {
+            _maxPly = ply;
+        }
+    }
+
+    /** Record a static evaluation. */
+    void leaf() {
+        _leaves += 1;
+    }
+
+    /** Record the expansion of a position into its moves. */
+    void expansion() {
+        _expansions += 1;
+    }
+
+    /** Record a cutoff caused by the Kth move searched (numbering from
+     *  0). */
+    void cutoff(int k) {
+        _cutoffs += 1;
+        if (k == 0) {
+            _firstMoveCutoffs += 1;
+        }
+    }
+
+    /** Record a probe of the transposition table, which found an entry
+     *  iff HIT. */
+    void tableProbe(boolean hit) {
+        _tableProbes += 1;
+        if (hit) {
+            _tableHits += 1;
+        }
+    }
+
+    /** Record that the iteration to DEPTH took NANOS nanoseconds. */
+    void iteration(int depth, long nanos) {
+        if (depth <= MAX_TIMED_DEPTH) {
+            _iterationNanos[depth] += nanos;
+            _maxDepth = Math.max(_maxDepth, depth);
+        }
+    }
+
+    /** Add the counts in OTHER to mine. */
+    void add(SearchStats other) {
+        _searches += other._searches;
+        _nodes += other._nodes;
+        _leaves += other._leaves;
+        _expansions += other._expansions;
+        _cutoffs += other._cutoffs;
+        _firstMoveCutoffs += other._firstMoveCutoffs;
+        _tableProbes += other._tableProbes;
+        _tableHits += other._tableHits;
+        _maxPly = Math.max(_maxPly, other._maxPly);
+        for (int d = 0; d <= other._maxDepth; d += 1) {
+            _iterationNanos[d] += other._iterationNanos[d];
+        }
+        _maxDepth = Math.max(_maxDepth, other._maxDepth);
+    }
+
+    /** Clear all counts, and count the start of one search. */
+    void start() {
+        clear();
+        _searches = 1;
+    }
+
+    /** Clear all counts. */
+    void clear() {
+        _searches = _nodes = _leaves = _expansions = 0;
+        _cutoffs = _firstMoveCutoffs = _tableProbes = _tableHits = 0;
+        _maxPly = _maxDepth = 0;
+        Arrays.fill(_iterationNanos, 0);
+    }
+
+    /** Return the number of searches counted. */
+    long searches() {
+        return _searches;
+    }
+
+    /** Return the number of positions visited. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the number of static evaluations. */
+    long leaves() {
+        return _leaves;
+    }
+
+    /** Return the number of cutoffs. */
+    long cutoffs() {
+        return _cutoffs;
+    }
+
+    /** Return the fraction of cutoffs caused by the first move
+     *  searched (0 if there were none). */
+    double firstMoveCutoffRate() {
+        return _cutoffs == 0 ? 0 : (double) _firstMoveCutoffs / _cutoffs;
+    }
+
+    /** Return the number of transposition table probes. */
+    long tableProbes() {
+        return _tableProbes;
+    }
+
+    /** Return the number of transposition table probes that found an
+     *  entry. */
+    long tableHits() {
+        return _tableHits;
+    }
+
+    /** Return the average number of children visited per expanded
+     *  position (0 if none). */
+    double branching() {
+        return _expansions == 0 ? 0
+            : (double) (_nodes - _searches) / _expansions;
+    }
+
+    /** Return the deepest ply reached. */
+    int maxPly() {
+        return _maxPly;
+    }
+
+    /** Return the total time in nanoseconds spent on iterations to
+     *  DEPTH. */
+    long iterationNanos(int depth) {
+        return depth <= MAX_TIMED_DEPTH ? _iterationNanos[depth] : 0;
+    }
+
+    /** Return the greatest depth with a timed iteration. */
+    int maxDepth() {
+        return _maxDepth;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format(
+            "nodes=%d leaves=%d cutoffs=%d first=%.1f%% branching=%.2f"
+            + " maxply=%d", _nodes, _leaves, _cutoffs,
+            100 * firstMoveCutoffRate(), branching(), _maxPly));
+        if (_tableProbes > 0) {
+            result.append(String.format(" tt=%d/%d", _tableHits,
+                                        _tableProbes));
+        }
+        for (int d = 1; d <= _maxDepth; d += 1) {
+            if (_iterationNanos[d] > 0) {
+                result.append(String.format(" depth%d=%.1fms", d,
+                                            _iterationNanos[d] / 1e6));
+            }
+        }
+        return result.toString();
+    }
+
+    /** Number of searches counted. */
+    private long _searches;
+    /** Number of positions visited. */
+    private long _nodes;
+    /** Number of static evaluations. */
+    private long _leaves;
+    /** Number of positions expanded into their moves. */
+    private long _expansions;
+    /** Number of cutoffs. */
+    private long _cutoffs;
+    /** Number of cutoffs caused by the first move searched. */
+    private long _firstMoveCutoffs;
+    /** Number of transposition table probes. */
+    private long _tableProbes;
+    /** Number of transposition table probes that found an entry. */
+    private long _tableHits;
+    /** Deepest ply reached. */
+    private int _maxPly;
+    /** Greatest depth with a recorded iteration time. */
+    private int _maxDepth;
+    /** Total time of the iterations to each depth. */
+    private final long[] _iterationNanos = new long[MAX_TIMED_DEPTH + 1];
+}
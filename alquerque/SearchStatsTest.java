@@ -0,0 +1,59 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of SearchStats.
+ *  @author Mudabbir Khan
+ */
+public class SearchStatsTest {
+
+    @Test
+    public void testCounts() {
+        SearchStats stats = new SearchStats();
+        stats.start();
+        stats.node(0);
+        stats.expansion();
+        stats.node(1);
+        stats.leaf();
+        stats.node(1);
+        stats.leaf();
+        stats.cutoff(0);
+        stats.cutoff(3);
+        stats.iteration(1, 2_000_000);
+        assertEquals(3, stats.nodes());
+        assertEquals(2, stats.leaves());
+        assertEquals(2, stats.cutoffs());
+        assertEquals(0.5, stats.firstMoveCutoffRate(), 1e-9);
+        assertEquals(2.0, stats.branching(), 1e-9);
+        assertEquals(1, stats.maxPly());
+        assertEquals(2_000_000, stats.iterationNanos(1));
+
+        SearchStats total = new SearchStats();
+        total.add(stats);
+        total.add(stats);
+        assertEquals(2, total.searches());
+        assertEquals(6, total.nodes());
+        assertEquals(4_000_000, total.iterationNanos(1));
+        stats.start();
+        assertEquals(0, stats.nodes());
+        assertEquals(1, stats.searches());
+    }
+
+    @Test
+    public void testAIFillsStats() {
+        Board board = new Board();
+        Game game = new Game(board, prompt -> null,
+                             new EngineGame.SilentReporter());
+        AI ai = new AI(game, PieceColor.WHITE, 3, Weights.DEFAULT);
+        ai.myMove();
+        SearchStats stats = ai.lastStats();
+        assertEquals(ai.lastNodes(), stats.nodes());
+        assertTrue(stats.nodes() > stats.leaves());
+        assertTrue(stats.leaves() > 0);
+        assertEquals(3, stats.maxPly());
+        assertTrue(stats.iterationNanos(3) > 0);
+        assertTrue(game.context().statsReport().stream()
+                   .anyMatch(s -> s.startsWith("white: searches=1 ")));
+    }
+}
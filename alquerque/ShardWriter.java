@@ -0,0 +1,111 @@
+package qirkat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** Writes PositionRecords to a sequence of shard files, each at most a
+ *  given size.  Records are collected in a direct buffer and written to
+ *  the file's channel a buffer at a time.  Not thread-safe: each writing
+ *  thread should have its own ShardWriter (with its own file prefix).
+ *  @author Mudabbir Khan
+ */
+class ShardWriter implements Closeable {
+
+    /** File name extension of shards. */
+    static final String EXTENSION = ".qpos";
+
+    /** A writer that creates files named PREFIX-NNNNN.qpos in DIR,
+     *  each holding at most MAXBYTES bytes, and buffers BUFFERBYTES
+     *  bytes between writes. */
+    ShardWriter(Path dir, String prefix, long maxBytes, int bufferBytes) {
+        _dir = dir;
+        _prefix = prefix;
+        _recordsPerShard =
+            Math.max(1, (maxBytes - PositionRecord.HEADER_SIZE)
+                     / PositionRecord.SIZE);
+        _buffer = ByteBuffer.allocateDirect(
+            Math.max(bufferBytes, PositionRecord.HEADER_SIZE
+                     + PositionRecord.SIZE)).order(PositionRecord.ORDER);
+    }
+
+    /** Write a record for the position with pieces WHITE and BLACK,
+     *  restrictions NOLEFT and NORIGHT and SIDE to move at ply PLY, with
+     *  search score SCORE and game result RESULT (a PositionRecord
+     *  result code). */
+    void add(int white, int black, int noLeft, int noRight, PieceColor side,
+             int score, int ply, int result) throws IOException {
+        startRecord();
+        PositionRecord.put(_buffer, white, black, noLeft, noRight, side,
+                           score, ply, result);
+    }
+
+    /** Return the number of records written. */
+    long records() {
+        return _records;
+    }
+
+    /** Return the number of shard files created. */
+    int shards() {
+        return _shards;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_channel != null) {
+            flush();
+            _channel.close();
+            _channel = null;
+        }
+    }
+
+    /** Make room in the buffer for one record, starting a new shard if
+     *  the current one is full. */
+    private void startRecord() throws IOException {
+        if (_channel == null || _inShard == _recordsPerShard) {
+            close();
+            _channel = FileChannel.open(
+                _dir.resolve(String.format("%s-%05d%s", _prefix, _shards,
+                                           EXTENSION)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            _shards += 1;
+            _inShard = 0;
+            PositionRecord.putHeader(_buffer);
+        }
+        if (_buffer.remaining() < PositionRecord.SIZE) {
+            flush();
+        }
+        _inShard += 1;
+        _records += 1;
+    }
+
+    /** Write out the contents of the buffer. */
+    private void flush() throws IOException {
+        _buffer.flip();
+        while (_buffer.hasRemaining()) {
+            _channel.write(_buffer);
+        }
+        _buffer.clear();
+    }
+
+    /** Directory holding the shards. */
+    private final Path _dir;
+    /** File-name prefix of the shards. */
+    private final String _prefix;
+    /** Maximum number of records in a shard. */
+    private final long _recordsPerShard;
+    /** Records waiting to be written. */
+    private final ByteBuffer _buffer;
+    /** The current shard, or null if none is open. */
+    private FileChannel _channel;
+    /** Number of shards created. */
+    private int _shards;
+    /** Number of records in the current shard. */
+    private long _inShard;
+    /** Total number of records. */
+    private long _records;
+}
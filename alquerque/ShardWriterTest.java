@@ -0,0 +1,83 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static qirkat.PieceColor.*;
+
+/** Tests of ShardWriter and PositionRecord.
+ *  @author Mudabbir Khan
+ */
+public class ShardWriterTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path dir = Files.createTempDirectory("qirkat");
+        ShardWriter writer =
+            new ShardWriter(dir, "t", PositionRecord.HEADER_SIZE
+                            + 3 * PositionRecord.SIZE, 40);
+        for (int i = 0; i < 7; i += 1) {
+            writer.add(i, i << 5, i << 10, i << 15, i % 2 == 0 ? WHITE : BLACK,
+                       i == 6 ? 100_000 : -10 * i, i,
+                       PositionRecord.resultCode(i < 3 ? BLACK : EMPTY));
+        }
+        writer.close();
+        assertEquals(7, writer.records());
+        assertEquals(3, writer.shards());
+
+        CompactBoard pos = new CompactBoard();
+        int k = 0;
+        for (int s = 0; s < 3; s += 1) {
+            File file = dir.resolve(String.format("t-%05d%s", s,
+                                                  ShardWriter.EXTENSION))
+                .toFile();
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(
+                                                 file.toPath()))
+                .order(PositionRecord.ORDER);
+            file.deleteOnExit();
+            assertTrue(PositionRecord.checkHeader(buf));
+            int n = (buf.limit() - PositionRecord.HEADER_SIZE)
+                / PositionRecord.SIZE;
+            assertEquals(s < 2 ? 3 : 1, n);
+            assertEquals(PositionRecord.HEADER_SIZE
+                         + n * PositionRecord.SIZE, buf.limit());
+            for (int r = 0; r < n; r += 1, k += 1) {
+                int offset = PositionRecord.HEADER_SIZE
+                    + r * PositionRecord.SIZE;
+                PositionRecord.get(buf, offset, pos);
+                assertEquals(k, pos.whiteMask());
+                assertEquals(k << 5, pos.blackMask());
+                assertEquals(k << 10, pos.noLeftMask());
+                assertEquals(k << 15, pos.noRightMask());
+                assertEquals(k % 2 == 0 ? WHITE : BLACK, pos.whoseMove());
+                assertEquals(k == 6 ? Short.MAX_VALUE : -10 * k,
+                             PositionRecord.score(buf, offset));
+                assertEquals(k, PositionRecord.ply(buf, offset));
+                assertEquals(k < 3 ? PositionRecord.BLACK_WON
+                             : PositionRecord.DRAW,
+                             PositionRecord.result(buf, offset));
+            }
+        }
+        assertEquals(7, k);
+        dir.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void testBadHeader() {
+        ByteBuffer buf = ByteBuffer.allocate(PositionRecord.HEADER_SIZE)
+            .order(PositionRecord.ORDER);
+        PositionRecord.putHeader(buf);
+        buf.flip();
+        assertTrue(PositionRecord.checkHeader(buf));
+        buf.putInt(4, PositionRecord.VERSION + 1);
+        assertFalse(PositionRecord.checkHeader(buf));
+        buf.limit(PositionRecord.HEADER_SIZE - 1);
+        assertFalse(PositionRecord.checkHeader(buf));
+    }
+}
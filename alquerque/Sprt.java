@@ -0,0 +1,157 @@
+package qirkat;
+
+/** A sequential probability ratio test on the results of pairs of games
+ *  between engines A and B, deciding between the hypotheses H0: A is
+ *  ELO0 stronger than B, and H1: A is ELO1 stronger than B (ELO1 >
+ *  ELO0).
+ *
+ *  A pair is two games from the same opening and seed with colors
+ *  swapped, and is scored 0, 1/4, 1/2, 3/4 or 1 for A (the
+ *  "pentanomial" model, which accounts for the correlation between the
+ *  games of a pair).  The log-likelihood ratio uses the usual normal
+ *  approximation: with N pairs of mean score M and variance V,
+ *      LLR = N (S1 - S0) (2 M - S0 - S1) / (2 V),
+ *  where S0 and S1 are the expected scores under H0 and H1.
+ *  @author Mudabbir Khan
+ */
+class Sprt {
+
+    /** Possible outcomes of the test. */
+    static enum Decision {
+        /** More pairs are needed. */
+        CONTINUE,
+        /** H0 is accepted. */
+        H0,
+        /** H1 is accepted. */
+        H1;
+    }
+
+    /** Smallest variance used in computing the LLR, so that a run of
+     *  identical results still leads to a decision. */
+    private static final double MIN_VARIANCE = 1e-4;
+    /** Number of standard errors in the reported Elo error bar (95%). */
+    private static final double Z95 = 1.959964;
+    /** Number of distinct pair scores. */
+    private static final int OUTCOMES = 5;
+
+    /** A test of H0: Elo difference ELO0 against H1: ELO1, with
+     *  false-positive rate ALPHA and false-negative rate BETA. */
+    Sprt(double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0 || alpha <= 0 || alpha >= 1
+            || beta <= 0 || beta >= 1) {
+            throw new IllegalArgumentException("bad SPRT parameters");
+        }
+        _elo0 = elo0;
+        _elo1 = elo1;
+        _lower = Math.log(beta / (1 - alpha));
+        _upper = Math.log((1 - beta) / alpha);
+    }
+
+    /** Record a pair in which A scored SCORE (0, 0.25, 0.5, 0.75 or 1). */
+    void addPair(double score) {
+        _counts[(int) Math.round(score * (OUTCOMES - 1))] += 1;
+        _pairs += 1;
+    }
+
+    /** Return the number of pairs recorded. */
+    int pairs() {
+        return _pairs;
+    }
+
+    /** Return the mean score of A per game. */
+    double mean() {
+        double total = 0;
+        for (int i = 0; i < OUTCOMES; i += 1) {
+            total += _counts[i] * score(i);
+        }
+        return _pairs == 0 ? 0.5 : total / _pairs;
+    }
+
+    /** Return the variance of the pair scores. */
+    double variance() {
+        double m = mean(), total = 0;
+        for (int i = 0; i < OUTCOMES; i += 1) {
+            total += _counts[i] * (score(i) - m) * (score(i) - m);
+        }
+        return _pairs == 0 ? 0 : total / _pairs;
+    }
+
+    /** Return the current log-likelihood ratio of H1 to H0. */
+    double llr() {
+        if (_pairs < 2) {
+            return 0;
+        }
+        double s0 = expectedScore(_elo0), s1 = expectedScore(_elo1);
+        return _pairs * (s1 - s0) * (2 * mean() - s0 - s1)
+            / (2 * Math.max(variance(), MIN_VARIANCE));
+    }
+
+    /** Return the LLR at or below which H0 is accepted. */
+    double lowerBound() {
+        return _lower;
+    }
+
+    /** Return the LLR at or above which H1 is accepted. */
+    double upperBound() {
+        return _upper;
+    }
+
+    /** Return the current decision. */
+    Decision decision() {
+        double llr = llr();
+        if (llr >= _upper) {
+            return Decision.H1;
+        } else if (llr <= _lower) {
+            return Decision.H0;
+        }
+        return Decision.CONTINUE;
+    }
+
+    /** Return the estimated Elo difference of A over B. */
+    double elo() {
+        return elo(mean());
+    }
+
+    /** Return the half-width of the 95% confidence interval of elo(). */
+    double eloError() {
+        if (_pairs == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double margin = Z95 * Math.sqrt(variance() / _pairs);
+        return (elo(mean() + margin) - elo(mean() - margin)) / 2;
+    }
+
+    /** Return the expected score per game of a player ELO points
+     *  stronger than its opponent. */
+    static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /** Return the Elo difference corresponding to an expected score per
+     *  game of SCORE, limited to a finite value. */
+    static double elo(double score) {
+        double s = Math.min(Math.max(score, 1e-3), 1 - 1e-3);
+        return -400 * Math.log10(1 / s - 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("elo0=%.1f elo1=%.1f: %d pairs, LLR %.2f"
+                             + " (%.2f, %.2f)", _elo0, _elo1, _pairs, llr(),
+                             _lower, _upper);
+    }
+
+    /** Return the pair score with index I. */
+    private static double score(int i) {
+        return (double) i / (OUTCOMES - 1);
+    }
+
+    /** The Elo differences under H0 and H1. */
+    private final double _elo0, _elo1;
+    /** Bounds on the LLR. */
+    private final double _lower, _upper;
+    /** Number of pairs with each score (indexed by 4 * score). */
+    private final int[] _counts = new int[OUTCOMES];
+    /** Total number of pairs. */
+    private int _pairs;
+}
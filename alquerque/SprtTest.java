@@ -0,0 +1,51 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the SPRT used for engine matches.
+ *  @author Mudabbir Khan
+ */
+public class SprtTest {
+
+    @Test
+    public void testEloConversion() {
+        assertEquals(0.5, Sprt.expectedScore(0), 1e-9);
+        assertEquals(0.0, Sprt.elo(0.5), 1e-9);
+        assertEquals(100, Sprt.elo(Sprt.expectedScore(100)), 1e-6);
+        assertTrue(Sprt.elo(1.0) < Double.POSITIVE_INFINITY);
+    }
+
+    @Test
+    public void testAcceptH1() {
+        Sprt s = new Sprt(0, 10, 0.05, 0.05);
+        int pairs = 0;
+        while (s.decision() == Sprt.Decision.CONTINUE) {
+            s.addPair(pairs % 3 == 0 ? 0.5 : 0.75);
+            pairs += 1;
+        }
+        assertEquals(Sprt.Decision.H1, s.decision());
+        assertTrue(s.elo() > 0);
+        assertTrue(s.elo() - s.eloError() > 0);
+    }
+
+    @Test
+    public void testAcceptH0() {
+        Sprt s = new Sprt(0, 10, 0.05, 0.05);
+        while (s.decision() == Sprt.Decision.CONTINUE) {
+            s.addPair(s.pairs() % 2 == 0 ? 0.25 : 0.5);
+        }
+        assertEquals(Sprt.Decision.H0, s.decision());
+        assertTrue(s.elo() < 0);
+    }
+
+    @Test
+    public void testUndecided() {
+        Sprt s = new Sprt(0, 10, 0.05, 0.05);
+        for (int i = 0; i < 10; i += 1) {
+            s.addPair(i % 2 == 0 ? 0.25 : 0.75);
+        }
+        assertEquals(0.5, s.mean(), 1e-9);
+        assertEquals(Sprt.Decision.CONTINUE, s.decision());
+    }
+}
@@ -0,0 +1,328 @@
+package qirkat;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static qirkat.PieceColor.*;
+import static qirkat.Command.Type.*;
+import static qirkat.GameException.error;
+
+/** A headless tournament between two engine configurations, A and B,
+ *  playing many games at once on a pool of threads.
+ *
+ *  Games are played in pairs: both games of a pair start from the same
+ *  opening with the same random seed (as for the 'seed' command), with
+ *  A playing white in the first and black in the second.  Openings are
+ *  taken in rotation from a file of lines in the form of the 'set'
+ *  command (the word "set" is optional).
+ *
+ *  In SPRT mode, the tournament stops as soon as a sequential
+ *  probability ratio test (see Sprt) on the pairs played so far accepts
+ *  either hypothesis, so that GAMES is only an upper limit.
+ *  @author Mudabbir Khan
+ */
+public class Tournament {
+
+    /** Default Elo difference for H1 of an SPRT. */
+    static final double DEFAULT_ELO1 = 5;
+    /** Default false-positive and false-negative rates of an SPRT. */
+    static final double DEFAULT_ALPHA = 0.05;
+    /** Number of pairs of games queued per thread. */
+    private static final int PAIRS_AHEAD = 2;
+
+    /** Run a tournament described by ARGS:
+     *      [--games N] [--threads N] [--seed S] [--openings FILE]
+     *      [--max-plies N] [--sprt ELO0 ELO1 [--alpha A] [--beta B]]
+     *      ENGINE_A ENGINE_B
+     *  where the engines are written as for EngineConfig.parse. */
+    public static void main(String[] args) {
+        int games = 100,
+            threads = Runtime.getRuntime().availableProcessors(),
+            maxPlies = EngineGame.DEFAULT_MAX_PLIES;
+        long seed = 0;
+        double elo0 = 0, elo1 = DEFAULT_ELO1, alpha = DEFAULT_ALPHA,
+            beta = DEFAULT_ALPHA;
+        boolean sprt = false;
+        String openings = null;
+        List<String> engines = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i += 1) {
+                switch (args[i]) {
+                case "--games":
+                    games = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--openings":
+                    openings = args[++i];
+                    break;
+                case "--max-plies":
+                    maxPlies = Integer.parseInt(args[++i]);
+                    break;
+                case "--sprt":
+                    sprt = true;
+                    elo0 = Double.parseDouble(args[++i]);
+                    elo1 = Double.parseDouble(args[++i]);
+                    break;
+                case "--alpha":
+                    alpha = Double.parseDouble(args[++i]);
+                    break;
+                case "--beta":
+                    beta = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    engines.add(args[i]);
+                    break;
+                }
+            }
+            if (engines.size() != 2 || games <= 0 || threads <= 0) {
+                usage();
+            }
+            Tournament t =
+                new Tournament(EngineConfig.parse(engines.get(0)),
+                               EngineConfig.parse(engines.get(1)),
+                               readOpenings(openings), seed, maxPlies,
+                               new Sprt(elo0, elo1, alpha, beta));
+            t.run(games, threads, sprt);
+            System.out.print(t.report(sprt));
+        } catch (IllegalArgumentException
+                 | ArrayIndexOutOfBoundsException excp) {
+            usage();
+        } catch (GameException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Give usage message and exit. */
+    static void usage() {
+        System.err.println("Usage: java qirkat.Tournament [--games N]"
+                           + " [--threads N] [--seed S] [--openings FILE]"
+                           + " [--max-plies N] [--sprt ELO0 ELO1"
+                           + " [--alpha A] [--beta B]] ENGINE_A ENGINE_B");
+        System.exit(1);
+    }
+
+    /** A tournament between engines A and B, using OPENINGS (SETBOARD
+     *  commands; empty for just the initial position), seeding the pair
+     *  of games numbered K with SEED + K and drawing games after
+     *  MAXPLIES plies.  Pair results are accumulated in SPRT. */
+    Tournament(EngineConfig a, EngineConfig b, List<Command> openings,
+               long seed, int maxPlies, Sprt sprt) {
+        _a = a;
+        _b = b;
+        _openings = openings;
+        _seed = seed;
+        _maxPlies = maxPlies;
+        _sprt = sprt;
+    }
+
+    /** Return the openings listed in FILE, or an empty list if FILE is
+     *  null.  Each must be a position with a move (see checkOpening). */
+    static List<Command> readOpenings(String file) {
+        List<Command> result = new ArrayList<>();
+        if (file == null) {
+            return result;
+        }
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                Command cmnd = parsePosition(line);
+                if (cmnd != null) {
+                    checkOpening(cmnd, line);
+                    result.add(cmnd);
+                }
+            }
+        } catch (IOException excp) {
+            throw error("Cannot open file %s", file);
+        }
+        return result;
+    }
+
+    /** Return the SETBOARD command denoted by LINE, which has the form
+     *  of a 'set' command with the word "set" optional, or null if LINE
+     *  is blank or a comment. */
+    static Command parsePosition(String line) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+            return null;
+        }
+        if (!line.toLowerCase().startsWith("set")) {
+            line = "set " + line;
+        }
+        Command cmnd = Command.parseCommand(line);
+        if (cmnd.commandType() != SETBOARD) {
+            throw error("bad position: %s", line);
+        }
+        return cmnd;
+    }
+
+    /** Check that OPENING, the SETBOARD command on LINE of an openings
+     *  file, gives a position from which the side to move has a move. */
+    static void checkOpening(Command opening, String line) {
+        Board board = new Board();
+        try {
+            board.setPieces(opening.operands()[1],
+                            opening.operands()[0].equalsIgnoreCase("white")
+                            ? WHITE : BLACK);
+        } catch (IllegalArgumentException excp) {
+            throw error("bad position: %s", line.trim());
+        }
+        if (board.getMoves().isEmpty()) {
+            throw error("no moves from position: %s", line.trim());
+        }
+    }
+
+    /** Play up to GAMES games (rounded up to an even number) using
+     *  THREADS threads, accumulating the results.  If STOPEARLY, stop
+     *  when my SPRT reaches a decision. */
+    void run(int games, int threads, boolean stopEarly) {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "tournament");
+            t.setDaemon(true);
+            return t;
+        });
+        ArrayDeque<Future<EngineGame>> pending = new ArrayDeque<>();
+        int pairs = (games + 1) / 2, next = 0;
+        try {
+            while (next < pairs || !pending.isEmpty()) {
+                while (next < pairs && pending.size() < 2 * PAIRS_AHEAD
+                       * threads) {
+                    for (boolean aWhite : new boolean[] { true, false }) {
+                        EngineGame game = newGame(next, aWhite);
+                        pending.add(pool.submit(() -> {
+                            game.play();
+                            return game;
+                        }));
+                    }
+                    next += 1;
+                }
+                double score = record(pending.remove().get(), true)
+                    + record(pending.remove().get(), false);
+                _sprt.addPair(score / 2);
+                if (stopEarly
+                    && _sprt.decision() != Sprt.Decision.CONTINUE) {
+                    break;
+                }
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
+        } finally {
+            pool.shutdownNow();
+        }
+        _elapsed = System.nanoTime() - start;
+    }
+
+    /** Return the game of pair K in which A plays white iff AWHITE. */
+    EngineGame newGame(int k, boolean aWhite) {
+        Command opening =
+            _openings.isEmpty() ? null : _openings.get(k % _openings.size());
+        return new EngineGame(aWhite ? _a : _b, aWhite ? _b : _a, opening,
+                              _seed + k, _maxPlies);
+    }
+
+    /** Add the results of GAME, in which A played white iff AWHITE, to
+     *  my totals, and return A's score (1 for a win, 0.5 for a draw). */
+    double record(EngineGame game, boolean aWhite) {
+        PieceColor aSide = aWhite ? WHITE : BLACK;
+        PieceColor winner = game.winner();
+        double score;
+        if (winner == EMPTY) {
+            _draws += 1;
+            score = 0.5;
+        } else if (winner == aSide) {
+            _aWins += 1;
+            score = 1;
+        } else {
+            _bWins += 1;
+            score = 0;
+        }
+        _games += 1;
+        _plies += game.plies();
+        _stats[0].add(game, aSide);
+        _stats[1].add(game, aSide.opposite());
+        return score;
+    }
+
+    /** Return a summary of the results so far, including the state of
+     *  the SPRT iff SPRT. */
+    String report(boolean sprt) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("A: %s%nB: %s%n", _a, _b));
+        out.append(String.format("Games: %d  A wins: %d  B wins: %d"
+                                 + "  Draws: %d%n",
+                                 _games, _aWins, _bWins, _draws));
+        out.append(String.format("Average game length: %.1f plies%n",
+                                 _games == 0 ? 0.0
+                                 : (double) _plies / _games));
+        out.append(_stats[0].report("A"));
+        out.append(_stats[1].report("B"));
+        out.append(String.format("Elo (A - B): %.1f +/- %.1f (95%%)%n",
+                                 _sprt.elo(), _sprt.eloError()));
+        if (sprt) {
+            out.append(String.format("SPRT %s: %s%n", _sprt,
+                                     _sprt.decision()));
+        }
+        out.append(String.format("Wall time: %.1f sec%n", _elapsed / 1e9));
+        return out.toString();
+    }
+
+    /** Accumulated move statistics for one engine. */
+    private static class EngineStats {
+        /** Add the moves made by SIDE in GAME. */
+        void add(EngineGame game, PieceColor side) {
+            _moves += game.moves(side);
+            _nanos += game.nanos(side);
+            _nodes += game.nodes(side);
+        }
+
+        /** Return a line describing my totals for the engine NAME. */
+        String report(String name) {
+            return String.format("%s: %d moves, %.2f msec/move,"
+                                 + " %.0f nodes/sec%n", name, _moves,
+                                 _moves == 0 ? 0.0 : _nanos / 1e6 / _moves,
+                                 _nanos == 0 ? 0.0 : _nodes * 1e9 / _nanos);
+        }
+
+        /** Total moves. */
+        private long _moves;
+        /** Total time choosing moves (ns). */
+        private long _nanos;
+        /** Total positions examined. */
+        private long _nodes;
+    }
+
+    /** The two engines. */
+    private final EngineConfig _a, _b;
+    /** Openings, used in rotation. */
+    private final List<Command> _openings;
+    /** Statistics of the pairs played, and the test on them. */
+    private final Sprt _sprt;
+    /** Seed of the first pair of games. */
+    private final long _seed;
+    /** Ply limit per game. */
+    private final int _maxPlies;
+    /** Game totals. */
+    private int _games, _aWins, _bWins, _draws;
+    /** Total plies played. */
+    private long _plies;
+    /** Move statistics of A and B. */
+    private final EngineStats[] _stats = {
+        new EngineStats(), new EngineStats()
+    };
+    /** Wall-clock time of the last run (ns). */
+    private long _elapsed;
+}
@@ -0,0 +1,95 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static qirkat.PieceColor.*;
+
+/** Tests of Tournament.
+ *  @author Mudabbir Khan
+ */
+public class TournamentTest {
+
+    /** Playouts per move of engine A. */
+    private static final int PLAYOUTS = 20;
+
+    /** Return a small tournament, seeded with SEED, between an MCTS
+     *  player (A) and a depth-1 AI (B). */
+    private static Tournament tournament(long seed) {
+        return new Tournament(EngineConfig.parse("mcts:playouts="
+                                                 + PLAYOUTS),
+                              EngineConfig.parse("ai:depth=1"),
+                              new ArrayList<>(), seed, 40,
+                              new Sprt(0, 5, 0.05, 0.05));
+    }
+
+    /** Return the lines of the REPORT of a tournament that are not
+     *  timings. */
+    private static List<String> results(String report) {
+        List<String> result = new ArrayList<>();
+        for (String line : report.split("\n")) {
+            if (line.startsWith("Games:") || line.startsWith("Average")) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testPairing() {
+        Tournament t = tournament(3);
+        EngineGame aWhite = t.newGame(0, true), aBlack = t.newGame(0, false);
+        aWhite.play();
+        aBlack.play();
+        assertEquals(PLAYOUTS * aWhite.moves(WHITE), aWhite.nodes(WHITE));
+        assertEquals(PLAYOUTS * aBlack.moves(BLACK), aBlack.nodes(BLACK));
+        assertNotEquals(PLAYOUTS * aWhite.moves(BLACK),
+                        aWhite.nodes(BLACK));
+    }
+
+    @Test
+    public void testTotals() {
+        Tournament t = tournament(7);
+        t.run(4, 2, false);
+        String report = t.report(false);
+        String games = results(report).get(0);
+        String[] words = games.trim().split("\\s+");
+        assertEquals("Games: 4", words[0] + " " + words[1]);
+        int aWins = Integer.parseInt(words[4]),
+            bWins = Integer.parseInt(words[7]),
+            draws = Integer.parseInt(words[9]);
+        assertEquals(4, aWins + bWins + draws);
+
+        Tournament again = tournament(7);
+        again.run(4, 1, false);
+        assertEquals(results(report), results(again.report(false)));
+    }
+
+    @Test
+    public void testOpenings() throws IOException {
+        File file = File.createTempFile("qirkat", ".txt");
+        file.deleteOnExit();
+        try (FileWriter out = new FileWriter(file)) {
+            out.write("# openings\n\n"
+                      + "white wwwww wwwww ww-bb bbbbb bbbbb\n"
+                      + "set black wwwww wwwww ww-bb bbbbb bbbbb\n");
+        }
+        assertEquals(2, Tournament.readOpenings(file.getPath()).size());
+        try (FileWriter out = new FileWriter(file, true)) {
+            out.write("white bbbbb ----- ----- ----- -----\n");
+        }
+        try {
+            Tournament.readOpenings(file.getPath());
+            fail("position without moves accepted");
+        } catch (GameException excp) {
+            assertEquals("no moves from position: white bbbbb -----"
+                         + " ----- ----- -----", excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package qirkat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import static qirkat.GameException.error;
+
+/** A table of the results of searches of positions, indexed by the
+ *  positions' 64-bit keys (see CompactBoard.key()).  Each entry records
+ *  the value found for a position, the depth of the search that found
+ *  it, whether the value is exact or a bound, the best move found (by
+ *  its first and last squares), and the age of the table (the number of
+ *  searches begun, modulo 64) when it was stored.
+ *
+ *  The entries are kept outside the Java heap, in direct byte buffers
+ *  of at most 1 GB each, so that even very large tables add nothing to
+ *  the work of the garbage collector.  (Their total size is limited by
+ *  -XX:MaxDirectMemorySize, which defaults to the maximum heap size.)
+ *  Each entry is 16 bytes: the key XORed with the data, and the data.
+ *  A reader accepts an entry only if the first XORed with the second
+ *  gives the key sought, so that entries torn by concurrent writes are
+ *  rejected rather than misread, and several threads may probe and
+ *  store at once without locking.
+ *
+ *  When two positions compete for an entry, the one searched more
+ *  deeply is kept, unless it was stored during an earlier search, in
+ *  which case it is replaced.
+ *
+ *  A table may be saved to a file and loaded (by mapping the file into
+ *  memory) into a table of any size.  The file consists of a header of
+ *  HEADER_BYTES bytes:
+ *
+ *      MAGIC, FORMAT_VERSION (ints), number of entries (long),
+ *      age (int), 0 (int), CRC-32 of the entries (long),
+ *      evaluation fingerprint (long)
+ *
+ *  followed by the entries, all little-endian.  The fingerprint
+ *  identifies the evaluation function and search that produced the
+ *  scores, which are meaningless to any other; a file is loaded only
+ *  by a caller supplying the same fingerprint.  Loaded entries count
+ *  as older than any stored afterwards, so they are the first to be
+ *  replaced.
+ *  @author Mudabbir Khan
+ */
+class TranspositionTable {
+
+    /** Kinds of value: exact, lower bound (the search failed high), and
+     *  upper bound (it failed low). */
+    static final int EXACT = 0, LOWER = 1, UPPER = 2;
+
+    /** Result of probe() when there is no entry for a key. */
+    static final long MISS = 0;
+
+    /** Size of an entry in bytes. */
+    static final int ENTRY_BYTES = 16;
+
+    /** Largest number of megabytes a table may occupy. */
+    static final int MAX_MEGABYTES = 1 << 16;
+
+    /** A table occupying at most MEGABYTES megabytes (at least one entry,
+     *  at most MAX_MEGABYTES). */
+    TranspositionTable(int megabytes) {
+        long bytes = (long) Math.min(megabytes, MAX_MEGABYTES) << 20;
+        long entries = Long.highestOneBit(Math.max(1, bytes / ENTRY_BYTES));
+        int segmentEntries = (int) Math.min(entries, SEGMENT_ENTRIES);
+        _segments = new ByteBuffer[(int) (entries / segmentEntries)];
+        for (int i = 0; i < _segments.length; i += 1) {
+            _segments[i] = ByteBuffer.allocateDirect(segmentEntries
+                                                     * ENTRY_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        _mask = entries - 1;
+    }
+
+    /** Return the data stored for KEY, or MISS if there is none.  Use
+     *  score(), depth(), bound() and matches() to examine it. */
+    long probe(long key) {
+        ByteBuffer segment = segment(key);
+        int i = offset(key);
+        long data = segment.getLong(i + 8);
+        return (segment.getLong(i) ^ data) == key ? data : MISS;
+    }
+
+    /** Record that a search of the position with KEY to DEPTH found
+     *  SCORE, of kind BOUND (EXACT, LOWER, or UPPER), with MOVE (possibly
+     *  null) best. */
+    void store(long key, Move move, int score, int depth, int bound) {
+        ByteBuffer segment = segment(key);
+        int i = offset(key);
+        long old = segment.getLong(i + 8);
+        if (old != MISS && age(old) == _age && depth(old) > depth) {
+            return;
+        }
+        long data = (score & 0xffffffffL)
+            | ((long) depth << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) encode(move) << MOVE_SHIFT)
+            | ((long) _age << AGE_SHIFT)
+            | VALID;
+        segment.putLong(i, key ^ data);
+        segment.putLong(i + 8, data);
+    }
+
+    /** Note the start of a new search, so that entries stored before
+     *  now are replaced in preference to those stored after. */
+    void newSearch() {
+        _age = (_age + 1) & AGE_MASK;
+    }
+
+    /** Write my entries to FILE, replacing it, recording that their
+     *  scores were found with the evaluation whose fingerprint is
+     *  EVALUATION.  The file is written under another name and then
+     *  renamed, so that FILE is never left partly written. */
+    void save(String file, long evaluation) throws IOException {
+        Path path = Paths.get(file).toAbsolutePath();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        for (ByteBuffer segment : _segments) {
+            crc.update(segment.duplicate().clear());
+        }
+        ByteBuffer header =
+            ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(capacity())
+            .putInt(_age).putInt(0).putLong(crc.getValue())
+            .putLong(evaluation).flip();
+        try (FileChannel out =
+             FileChannel.open(temp, StandardOpenOption.CREATE,
+                              StandardOpenOption.WRITE,
+                              StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, header);
+            for (ByteBuffer segment : _segments) {
+                writeFully(out, segment.duplicate().clear());
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Add the entries saved in FILE by save() to mine, where they count
+     *  as older than any stored from now on.  The file must have been
+     *  saved with EVALUATION as its evaluation's fingerprint. */
+    void load(String file, long evaluation) {
+        try (FileChannel in = FileChannel.open(Paths.get(file))) {
+            if (in.size() < HEADER_BYTES) {
+                throw error("%s is not a hash table file", file);
+            }
+            ByteBuffer header =
+                in.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) {
+                throw error("%s is not a hash table file", file);
+            }
+            if (header.getInt() != FORMAT_VERSION) {
+                throw error("%s has an unsupported format", file);
+            }
+            long entries = header.getLong();
+            int age = header.getInt();
+            header.getInt();
+            long checksum = header.getLong();
+            if (header.getLong() != evaluation) {
+                throw error("%s was saved with a different evaluation",
+                            file);
+            }
+            if (entries < 0 || entries > Long.MAX_VALUE / ENTRY_BYTES
+                || in.size() != HEADER_BYTES + entries * ENTRY_BYTES) {
+                throw error("%s is damaged", file);
+            }
+            MappedByteBuffer[] chunks =
+                new MappedByteBuffer[(int) ((entries + SEGMENT_ENTRIES - 1)
+                                            / SEGMENT_ENTRIES)];
+            CRC32 crc = new CRC32();
+            for (int c = 0; c < chunks.length; c += 1) {
+                long first = (long) c * SEGMENT_ENTRIES;
+                long size =
+                    Math.min(SEGMENT_ENTRIES, entries - first) * ENTRY_BYTES;
+                chunks[c] = in.map(FileChannel.MapMode.READ_ONLY,
+                                   HEADER_BYTES + first * ENTRY_BYTES, size);
+                chunks[c].order(ByteOrder.LITTLE_ENDIAN);
+                crc.update(chunks[c].duplicate());
+            }
+            if (crc.getValue() != checksum) {
+                throw error("%s is damaged", file);
+            }
+            for (MappedByteBuffer chunk : chunks) {
+                for (int i = 0; i < chunk.capacity(); i += ENTRY_BYTES) {
+                    long data = chunk.getLong(i + 8);
+                    if (data != MISS) {
+                        restore(chunk.getLong(i) ^ data, data);
+                    }
+                }
+            }
+            _age = (age + 1) & AGE_MASK;
+        } catch (IOException excp) {
+            throw error("Cannot read file %s", file);
+        }
+    }
+
+    /** Store DATA, loaded from a file, as the entry for KEY, unless the
+     *  entry there now is deeper. */
+    private void restore(long key, long data) {
+        ByteBuffer segment = segment(key);
+        int i = offset(key);
+        long old = segment.getLong(i + 8);
+        if (old == MISS || depth(old) < depth(data)) {
+            segment.putLong(i, key ^ data);
+            segment.putLong(i + 8, data);
+        }
+    }
+
+    /** Write all of BUF to OUT. */
+    private static void writeFully(FileChannel out, ByteBuffer buf)
+        throws IOException {
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+
+    /** Remove all entries. */
+    void clear() {
+        for (ByteBuffer segment : _segments) {
+            for (int i = 0; i < segment.capacity(); i += 8) {
+                segment.putLong(i, 0);
+            }
+        }
+    }
+
+    /** Return the number of entries I can hold. */
+    long capacity() {
+        return _mask + 1;
+    }
+
+    /** Return the score in DATA. */
+    static int score(long data) {
+        return (int) data;
+    }
+
+    /** Return the depth in DATA. */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xff;
+    }
+
+    /** Return the kind of value in DATA (EXACT, LOWER, or UPPER). */
+    static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 3;
+    }
+
+    /** Return the age of the table when DATA was stored. */
+    static int age(long data) {
+        return (int) (data >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    /** Return true iff MOVE starts and ends on the same squares as the
+     *  move in DATA. */
+    static boolean matches(Move move, long data) {
+        return encode(move) == ((int) (data >>> MOVE_SHIFT) & 0x3ff);
+    }
+
+    /** Return MOVE's starting and final squares packed into 10 bits, or
+     *  0 if MOVE is null. */
+    private static int encode(Move move) {
+        if (move == null) {
+            return 0;
+        }
+        Move last = move;
+        while (last.jumpTail() != null) {
+            last = last.jumpTail();
+        }
+        return move.fromIndex() | (last.toIndex() << 5);
+    }
+
+    /** Return the buffer holding the entry for KEY. */
+    private ByteBuffer segment(long key) {
+        return _segments[(int) ((key & _mask) >>> SEGMENT_BITS)];
+    }
+
+    /** Return the offset of the entry for KEY within its buffer. */
+    private int offset(long key) {
+        return (int) (key & _mask & (SEGMENT_ENTRIES - 1)) * ENTRY_BYTES;
+    }
+
+    /** First four bytes of a saved table ("QkTT"). */
+    private static final int MAGIC = 0x5454_6b51;
+    /** Version of the format of saved tables. */
+    private static final int FORMAT_VERSION = 2;
+    /** Size of the header of a saved table. */
+    private static final int HEADER_BYTES = 40;
+
+    /** Log2 of the number of entries in a full buffer (1 GB). */
+    private static final int SEGMENT_BITS = 26;
+    /** Number of entries in a full buffer. */
+    private static final int SEGMENT_ENTRIES = 1 << SEGMENT_BITS;
+
+    /** Positions of the fields of an entry's data. */
+    private static final int
+        DEPTH_SHIFT = 32, BOUND_SHIFT = 40, MOVE_SHIFT = 42, AGE_SHIFT = 52;
+    /** Mask of the bits of an age. */
+    private static final int AGE_MASK = 0x3f;
+    /** Bit set in the data of every entry, so that no entry's data is
+     *  MISS. */
+    private static final long VALID = 1L << 63;
+
+    /** The buffers holding the entries. */
+    private final ByteBuffer[] _segments;
+    /** Number of entries - 1. */
+    private final long _mask;
+    /** The current age. */
+    private volatile int _age;
+}
@@ -0,0 +1,183 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static qirkat.TranspositionTable.*;
+
+/** Tests of TranspositionTable and of its use by AI.
+ *  @author Mudabbir Khan
+ */
+public class TranspositionTableTest {
+
+    @Test
+    public void testStoreAndProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        assertEquals(1 << 16, table.capacity());
+        Move move = Move.parseMove("c1-c3-a3");
+        long key = 0x123456789abcdefL;
+        assertEquals(MISS, table.probe(key));
+        table.store(key, move, -42, 3, LOWER);
+        long data = table.probe(key);
+        assertEquals(-42, score(data));
+        assertEquals(3, depth(data));
+        assertEquals(LOWER, bound(data));
+        assertTrue(matches(move, data));
+        assertFalse(matches(Move.parseMove("c1-c3"), data));
+        assertEquals(MISS, table.probe(key + table.capacity()));
+
+        table.store(key, null, 7, 2, EXACT);
+        assertEquals(-42, score(table.probe(key)));
+        table.store(key, null, 7, 4, EXACT);
+        data = table.probe(key);
+        assertEquals(7, score(data));
+        assertFalse(matches(move, data));
+        table.newSearch();
+        table.store(key, null, 9, 1, UPPER);
+        data = table.probe(key);
+        assertEquals(9, score(data));
+        assertEquals(UPPER, bound(data));
+        table.clear();
+        assertEquals(MISS, table.probe(key));
+    }
+
+    @Test
+    public void testConcurrentStores() throws InterruptedException {
+        TranspositionTable table = new TranspositionTable(1);
+        long base = 0x5555_0000_0000L;
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t += 1) {
+            int score = t + 1;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 200_000; i += 1) {
+                    table.store(base + (i & 7), null, score, score, EXACT);
+                }
+            });
+            writers[t].start();
+        }
+        for (int i = 0; i < 200_000; i += 1) {
+            long data = table.probe(base + (i & 7));
+            assertTrue(data == MISS || score(data) == depth(data));
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        File file = File.createTempFile("qirkat", ".tt");
+        file.deleteOnExit();
+        TranspositionTable table = new TranspositionTable(1);
+        Move move = Move.parseMove("b2-b3");
+        for (long key = 1; key <= 1000; key += 1) {
+            table.store(key * 0x9e3779b97f4a7c15L, move, (int) key, 3,
+                        EXACT);
+        }
+        table.save(file.getPath(), 42);
+
+        TranspositionTable same = new TranspositionTable(1),
+            smaller = new TranspositionTable(0);
+        same.load(file.getPath(), 42);
+        smaller.load(file.getPath(), 42);
+        int found = 0;
+        for (long key = 1; key <= 1000; key += 1) {
+            long data = same.probe(key * 0x9e3779b97f4a7c15L);
+            assertEquals((int) key, score(data));
+            assertTrue(matches(move, data));
+            if (smaller.probe(key * 0x9e3779b97f4a7c15L) != MISS) {
+                found += 1;
+            }
+        }
+        assertTrue(found > 0 && found < 1000);
+
+        long key = 0x9e3779b97f4a7c15L;
+        same.store(key, null, -1, 1, EXACT);
+        assertEquals(-1, score(same.probe(key)));
+
+        try {
+            new TranspositionTable(1).load(file.getPath(), 43);
+            fail("table for another evaluation loaded");
+        } catch (GameException excp) {
+            assertTrue(excp.getMessage().endsWith("different evaluation"));
+        }
+
+        try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+            f.seek(f.length() - 1);
+            int b = f.read();
+            f.seek(f.length() - 1);
+            f.write(b ^ 1);
+        }
+        try {
+            new TranspositionTable(1).load(file.getPath(), 42);
+            fail("damaged file loaded");
+        } catch (GameException excp) {
+            assertTrue(excp.getMessage().endsWith("is damaged"));
+        }
+    }
+
+    @Test
+    public void testEvaluation() {
+        EngineContext context = new EngineContext();
+        long evaluation = context.evaluation();
+        context.setWeights(new Weights(new double[] { 1, 1, 1.001 }));
+        assertEquals(evaluation, context.evaluation());
+        context.setHash(1);
+        long key = 0x9e3779b97f4a7c15L;
+        context.table().store(key, null, 5, 2, EXACT);
+        context.setWeights(new Weights(new double[] { 1, 2, 1 }));
+        assertNotEquals(evaluation, context.evaluation());
+        assertEquals(MISS, context.table().probe(key));
+    }
+
+    @Test
+    public void testKeys() {
+        CompactBoard b = new CompactBoard();
+        long key = b.key();
+        b.set(b.whiteMask(), b.blackMask(), b.noLeftMask(),
+              b.noRightMask(), PieceColor.BLACK);
+        assertNotEquals(key, b.key());
+        b.set(b.whiteMask(), b.blackMask(), 1, 0, PieceColor.WHITE);
+        assertNotEquals(key, b.key());
+        b.set(new Board());
+        assertEquals(key, b.key());
+    }
+
+    @Test
+    public void testSameValues() {
+        String[] positions = {
+            "wwwwwwwwwwww-bbbbbbbbbbbb",
+            "wwwwwwww-wwwwbbbbbbbbbbbb",
+            "w-w-w-w-w-b-b-b-b-b-w-w-b",
+            "--w--w-b-bww--b-----bb---",
+        };
+        for (String position : positions) {
+            for (PieceColor side : new PieceColor[] {
+                    PieceColor.WHITE, PieceColor.BLACK }) {
+                assertEquals(position + " " + side,
+                             searchScore(position, side, 0),
+                             searchScore(position, side, 1));
+            }
+        }
+    }
+
+    /** Return the value a 4-ply search gives POSITION with SIDE to move,
+     *  using a table of MEGABYTES megabytes. */
+    private static int searchScore(String position, PieceColor side,
+                                   int megabytes) {
+        Board board = new Board();
+        board.setPieces(position, side);
+        Game game = new Game(board, prompt -> null,
+                             new EngineGame.SilentReporter());
+        AI ai = new AI(game, side, 4, Weights.DEFAULT);
+        if (megabytes > 0) {
+            ai.setTable(new TranspositionTable(megabytes));
+        }
+        ai.myMove();
+        return ai.lastScore();
+    }
+}
@@ -0,0 +1,336 @@
+package qirkat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+import static qirkat.GameException.error;
+import static qirkat.Weights.FEATURES;
+import static qirkat.Weights.PIECES;
+
+/** Tunes the AI's evaluation weights (Texel-style) from positions
+ *  recorded by DataGen.
+ *
+ *  The probability that white wins a position is modeled as the
+ *  logistic function of its evaluation (in units of the weights), and
+ *  the tuner minimizes the logistic (cross-entropy) loss against the
+ *  recorded results, counting a draw as half a win.  As the model is
+ *  linear in the weights, it uses Newton's method, each iteration of
+ *  which needs one pass over the data for the gradient and Hessian.
+ *
+ *  Shards are memory-mapped, and each pass evaluates the records in
+ *  place in parallel with fork/join, so the data set is never held as
+ *  Board objects.  The final weights are scaled so that a piece is worth
+ *  1 (which does not change the AI's choices) and written in the form
+ *  read by Weights.load.
+ *  @author Mudabbir Khan
+ */
+public class Tuner {
+
+    /** Number of records evaluated by one fork/join leaf task. */
+    static final int CHUNK = 1 << 16;
+    /** Default number of Newton iterations. */
+    static final int DEFAULT_ITERATIONS = 10;
+    /** Ridge term added to the Hessian's diagonal, per record, to keep
+     *  it invertible. */
+    private static final double RIDGE = 1e-9;
+    /** Largest mapping of a single file. */
+    private static final int MAX_MAP =
+        Integer.MAX_VALUE / PositionRecord.SIZE * PositionRecord.SIZE;
+
+    /** Tune as described by ARGS:
+     *      [--iterations N] [--out FILE] SHARD_OR_DIRECTORY...
+     *  writing the weights to FILE (default weights.txt). */
+    public static void main(String[] args) {
+        int iterations = DEFAULT_ITERATIONS;
+        String out = "weights.txt";
+        List<Path> inputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i += 1) {
+                switch (args[i]) {
+                case "--iterations":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "--out":
+                    out = args[++i];
+                    break;
+                default:
+                    inputs.add(Paths.get(args[i]));
+                    break;
+                }
+            }
+            if (inputs.isEmpty()) {
+                usage();
+            }
+            Tuner tuner = new Tuner(inputs);
+            Weights w = tuner.tune(Weights.DEFAULT, iterations);
+            w.save(out);
+            System.out.printf("Wrote %s to %s%n", w, out);
+        } catch (IllegalArgumentException
+                 | ArrayIndexOutOfBoundsException excp) {
+            usage();
+        } catch (GameException | IOException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Give usage message and exit. */
+    static void usage() {
+        System.err.println("Usage: java qirkat.Tuner [--iterations N]"
+                           + " [--out FILE] SHARD_OR_DIRECTORY...");
+        System.exit(1);
+    }
+
+    /** A tuner for the records in the shard files INPUTS and in the
+     *  shard files in any directories in INPUTS. */
+    Tuner(List<Path> inputs) throws IOException {
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> files = Files.list(input)) {
+                    for (Path p : (Iterable<Path>) files.sorted()::iterator) {
+                        if (p.toString().endsWith(ShardWriter.EXTENSION)) {
+                            map(p);
+                        }
+                    }
+                }
+            } else {
+                map(input);
+            }
+        }
+        if (_records == 0) {
+            throw error("no positions found");
+        }
+    }
+
+    /** Return the number of records. */
+    long records() {
+        return _records;
+    }
+
+    /** Return weights minimizing the loss, starting from INITIAL and
+     *  running at most ITERATIONS Newton steps. */
+    Weights tune(Weights initial, int iterations) {
+        double[] w = new double[FEATURES];
+        for (int i = 0; i < FEATURES; i += 1) {
+            w[i] = initial.get(i) / Weights.SCALE;
+        }
+        for (int it = 0; it < iterations; it += 1) {
+            double[] sums = pass(w);
+            System.out.printf("Iteration %d: loss %.6f over %d positions%n",
+                              it, sums[0] / _records, _records);
+            double[] next = step(w, sums);
+            double size = 0;
+            for (int i = 0; i < FEATURES; i += 1) {
+                size = Math.max(size, Math.abs(next[i] - w[i]));
+            }
+            w = next;
+            if (size < 1e-9) {
+                break;
+            }
+        }
+        double scale = w[PIECES] > 0 ? w[PIECES] : 1;
+        for (int i = 0; i < FEATURES; i += 1) {
+            w[i] /= scale;
+        }
+        return new Weights(w);
+    }
+
+    /** Return the sums over all records of the loss, its gradient and
+     *  its Hessian with respect to weights W, in the layout described
+     *  at Pass. */
+    double[] pass(double[] w) {
+        return ForkJoinPool.commonPool().invoke(new Pass(w, 0,
+                                                         _chunks.size()));
+    }
+
+    /** Return the weights reached from W by one Newton step, given
+     *  SUMS, the result of pass(W). */
+    double[] step(double[] w, double[] sums) {
+        double[] step = solve(hessian(sums), gradient(sums));
+        double[] result = new double[FEATURES];
+        for (int i = 0; i < FEATURES; i += 1) {
+            result[i] = w[i] - step[i];
+        }
+        return result;
+    }
+
+    /** Map the shard FILE and add its records. */
+    private void map(Path file) throws IOException {
+        try (FileChannel channel =
+                 FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                            Math.min(size, PositionRecord.HEADER_SIZE))
+                .order(PositionRecord.ORDER);
+            if (!PositionRecord.checkHeader(header)) {
+                throw error("%s is not a position shard", file);
+            }
+            long start = PositionRecord.HEADER_SIZE;
+            long end = start + (size - start) / PositionRecord.SIZE
+                * PositionRecord.SIZE;
+            while (start < end) {
+                int len = (int) Math.min(end - start, MAX_MAP);
+                ByteBuffer buf =
+                    channel.map(FileChannel.MapMode.READ_ONLY, start, len)
+                    .order(PositionRecord.ORDER);
+                for (int off = 0; off < len;
+                     off += CHUNK * PositionRecord.SIZE) {
+                    _chunks.add(new Chunk(buf, off,
+                                          Math.min(len, off + CHUNK
+                                                   * PositionRecord.SIZE)));
+                }
+                _records += len / PositionRecord.SIZE;
+                start += len;
+            }
+        }
+    }
+
+    /** Return the gradient part of SUMS. */
+    private static double[] gradient(double[] sums) {
+        double[] g = new double[FEATURES];
+        System.arraycopy(sums, 1, g, 0, FEATURES);
+        return g;
+    }
+
+    /** Return the Hessian part of SUMS, with a small ridge added. */
+    private double[][] hessian(double[] sums) {
+        double[][] h = new double[FEATURES][FEATURES];
+        for (int i = 0; i < FEATURES; i += 1) {
+            for (int j = 0; j < FEATURES; j += 1) {
+                h[i][j] = sums[1 + FEATURES + i * FEATURES + j];
+            }
+            h[i][i] += RIDGE * _records;
+        }
+        return h;
+    }
+
+    /** Return the solution x of A x = B by Gaussian elimination with
+     *  partial pivoting.  Destroys A and B. */
+    private static double[] solve(double[][] a, double[] b) {
+        int n = b.length;
+        for (int c = 0; c < n; c += 1) {
+            int pivot = c;
+            for (int r = c + 1; r < n; r += 1) {
+                if (Math.abs(a[r][c]) > Math.abs(a[pivot][c])) {
+                    pivot = r;
+                }
+            }
+            double[] row = a[c];
+            a[c] = a[pivot];
+            a[pivot] = row;
+            double t = b[c];
+            b[c] = b[pivot];
+            b[pivot] = t;
+            for (int r = c + 1; r < n; r += 1) {
+                double f = a[r][c] / a[c][c];
+                for (int k = c; k < n; k += 1) {
+                    a[r][k] -= f * a[c][k];
+                }
+                b[r] -= f * b[c];
+            }
+        }
+        double[] x = new double[n];
+        for (int r = n - 1; r >= 0; r -= 1) {
+            double s = b[r];
+            for (int k = r + 1; k < n; k += 1) {
+                s -= a[r][k] * x[k];
+            }
+            x[r] = s / a[r][r];
+        }
+        return x;
+    }
+
+    /** A range of records [START, END) (byte offsets) in BUF. */
+    private static class Chunk {
+        /** The records in BUF from byte START to END. */
+        Chunk(ByteBuffer buf, int start, int end) {
+            _buf = buf;
+            _start = start;
+            _end = end;
+        }
+
+        /** Buffer holding the records. */
+        private final ByteBuffer _buf;
+        /** Byte offsets of the first record and just past the last. */
+        private final int _start, _end;
+    }
+
+    /** A task evaluating the chunks numbered [LO, HI).  Its result holds
+     *  the loss in element 0, the gradient in the next FEATURES
+     *  elements, and the Hessian in row-major order after that. */
+    private class Pass extends RecursiveTask<double[]> {
+        /** A task for chunks LO .. HI-1 under weights W. */
+        Pass(double[] w, int lo, int hi) {
+            _w = w;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                Pass left = new Pass(_w, _lo, mid);
+                left.fork();
+                double[] right = new Pass(_w, mid, _hi).compute();
+                double[] result = left.join();
+                for (int i = 0; i < result.length; i += 1) {
+                    result[i] += right[i];
+                }
+                return result;
+            }
+            double[] sums = new double[1 + FEATURES + FEATURES * FEATURES];
+            if (_lo == _hi) {
+                return sums;
+            }
+            Chunk chunk = _chunks.get(_lo);
+            CompactBoard pos = new CompactBoard();
+            long[] moves = new long[CompactBoard.MAX_MOVES];
+            int[] f = new int[FEATURES];
+            for (int off = chunk._start; off < chunk._end;
+                 off += PositionRecord.SIZE) {
+                PositionRecord.get(chunk._buf, off, pos);
+                Weights.features(pos, moves, f);
+                double eval = 0;
+                for (int i = 0; i < FEATURES; i += 1) {
+                    eval += _w[i] * f[i];
+                }
+                double p = 1 / (1 + Math.exp(-eval));
+                double target = PositionRecord.result(chunk._buf, off) / 2.0;
+                double q = Math.min(Math.max(p, 1e-12), 1 - 1e-12);
+                sums[0] -= target * Math.log(q)
+                    + (1 - target) * Math.log(1 - q);
+                double slope = p * (1 - p);
+                for (int i = 0; i < FEATURES; i += 1) {
+                    sums[1 + i] += (p - target) * f[i];
+                    for (int j = 0; j < FEATURES; j += 1) {
+                        sums[1 + FEATURES + i * FEATURES + j] +=
+                            slope * f[i] * f[j];
+                    }
+                }
+            }
+            return sums;
+        }
+
+        /** Weights being evaluated. */
+        private final double[] _w;
+        /** Range of chunks. */
+        private final int _lo, _hi;
+    }
+
+    /** The mapped records, in chunks of at most CHUNK records. */
+    private final List<Chunk> _chunks = new ArrayList<>();
+    /** Total number of records. */
+    private long _records;
+}
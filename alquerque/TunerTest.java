@@ -0,0 +1,78 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static qirkat.PieceColor.*;
+
+/** Tests of Tuner.
+ *  @author Mudabbir Khan
+ */
+public class TunerTest {
+
+    /** Write the positions of GAMES random games into a shard in a new
+     *  directory, with results that favor the side with more pieces,
+     *  and return the directory. */
+    private static Path shard(int games) throws IOException {
+        Path dir = Files.createTempDirectory("qirkat");
+        dir.toFile().deleteOnExit();
+        Random r = new Random(5);
+        CompactBoard c = new CompactBoard();
+        long[] buf = new long[CompactBoard.MAX_MOVES];
+        try (ShardWriter writer = new ShardWriter(dir, "t", 1 << 20,
+                                                  1 << 12)) {
+            for (int game = 0; game < games; game += 1) {
+                c.set(new Board());
+                for (int ply = 0; !c.gameOver(); ply += 1) {
+                    int pieces = Integer.bitCount(c.whiteMask())
+                        - Integer.bitCount(c.blackMask());
+                    double p = 1 / (1 + Math.exp(-0.5 * pieces));
+                    PieceColor winner = r.nextDouble() < p ? WHITE : BLACK;
+                    writer.add(c.whiteMask(), c.blackMask(),
+                               c.noLeftMask(), c.noRightMask(),
+                               c.whoseMove(), 0, ply,
+                               PositionRecord.resultCode(winner));
+                    int n = c.generate(buf);
+                    c.makeMove(buf[r.nextInt(n)]);
+                }
+            }
+        }
+        for (File f : dir.toFile().listFiles()) {
+            f.deleteOnExit();
+        }
+        return dir;
+    }
+
+    @Test
+    public void testNewtonStep() throws IOException {
+        Tuner tuner = new Tuner(List.of(shard(50)));
+        assertTrue(tuner.records() > 50);
+        double[] w = new double[Weights.FEATURES];
+        for (int i = 0; i < Weights.FEATURES; i += 1) {
+            w[i] = Weights.DEFAULT.get(i) / Weights.SCALE;
+        }
+        double[] sums = tuner.pass(w);
+        for (int it = 0; it < 3; it += 1) {
+            double[] next = tuner.step(w, sums);
+            double[] nextSums = tuner.pass(next);
+            assertTrue(nextSums[0] <= sums[0]);
+            w = next;
+            sums = nextSums;
+        }
+        assertTrue(w[Weights.PIECES] > 0.25 && w[Weights.PIECES] < 1);
+    }
+
+    @Test(expected = GameException.class)
+    public void testEmpty() throws IOException {
+        Path dir = Files.createTempDirectory("qirkat");
+        dir.toFile().deleteOnExit();
+        new Tuner(List.of(dir));
+    }
+}
@@ -11,7 +11,21 @@ public class UnitTest {
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
         System.exit(textui.runClasses(MoveTest.class, BoardTest.class,
-                                      CommandTest.class, MoreBoardTests.class));
+                                      CommandTest.class, MoreBoardTests.class,
+                                      CompactBoardTest.class, SprtTest.class,
+                                      GameServerTest.class,
+                                      AnalyzerTest.class,
+                                      AsyncReporterTest.class,
+                                      LatencyHistogramTest.class,
+                                      SearchStatsTest.class,
+                                      TranspositionTableTest.class,
+                                      AITest.class,
+                                      EngineProtocolTest.class,
+                                      MoveCacheTest.class,
+                                      ShardWriterTest.class,
+                                      TournamentTest.class,
+                                      WeightsTest.class,
+                                      TunerTest.class));
     }
 }
 
@@ -0,0 +1,153 @@
+package qirkat;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+import static qirkat.PieceColor.*;
+import static qirkat.GameException.error;
+
+/** The weights of the terms of the AI's static evaluation function.  A
+ *  position is described by FEATURES integer features, each positive
+ *  when it favors white:
+ *
+ *      PIECES    the number of white pieces less the number of black;
+ *      JUMPS     one less than the number of jumps available to the
+ *                player to move (0 if none);
+ *      MAX_JUMP  one less than the number of captures in the longest
+ *                jump available to the player to move (0 if none).
+ *
+ *  The last two are negated when black is to move.  The value of a
+ *  position is the weighted sum of its features, scaled by SCALE and
+ *  rounded.  A weights file has one line per feature, giving its name
+ *  and weight.
+ *  @author Mudabbir Khan
+ */
+class Weights {
+
+    /** Indices of the features. */
+    static final int PIECES = 0, JUMPS = 1, MAX_JUMP = 2;
+    /** Number of features. */
+    static final int FEATURES = 3;
+    /** Names of the features, as used in weights files. */
+    static final String[] NAMES = { "pieces", "jumps", "max_jump" };
+    /** Factor converting weighted sums to integer scores. */
+    static final int SCALE = 100;
+
+    /** The original hand-chosen weights. */
+    static final Weights DEFAULT = new Weights(new double[] { 1, 1, 1 });
+
+    /** Weights W, indexed by feature. */
+    Weights(double[] w) {
+        if (w.length != FEATURES) {
+            throw new IllegalArgumentException("wrong number of weights");
+        }
+        _weights = w.clone();
+        _scaled = new int[FEATURES];
+        for (int i = 0; i < FEATURES; i += 1) {
+            _scaled[i] = (int) Math.round(SCALE * w[i]);
+        }
+    }
+
+    /** Return the weights stored in FILE. */
+    static Weights load(String file) {
+        double[] w = DEFAULT._weights.clone();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length != 2 || fields[0].startsWith("#")) {
+                    continue;
+                }
+                int i = Arrays.asList(NAMES).indexOf(fields[0]);
+                if (i < 0) {
+                    throw error("unknown weight in %s: %s", file, fields[0]);
+                }
+                w[i] = Double.parseDouble(fields[1]);
+            }
+        } catch (IOException excp) {
+            throw error("Cannot open file %s", file);
+        } catch (NumberFormatException excp) {
+            throw error("bad weight in %s", file);
+        }
+        return new Weights(w);
+    }
+
+    /** Write me to FILE. */
+    void save(String file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            for (int i = 0; i < FEATURES; i += 1) {
+                out.printf("%s %.6f%n", NAMES[i], _weights[i]);
+            }
+        }
+    }
+
+    /** Return the weight of feature I. */
+    double get(int i) {
+        return _weights[i];
+    }
+
+    /** Return the value of position B, using MOVES (of length
+     *  CompactBoard.MAX_MOVES) and FEATURES (of length FEATURES) as
+     *  scratch space. */
+    int score(CompactBoard b, long[] moves, int[] features) {
+        features(b, moves, features);
+        int value = 0;
+        for (int i = 0; i < FEATURES; i += 1) {
+            value += _scaled[i] * features[i];
+        }
+        return value;
+    }
+
+    /** Store the features of position B into FEATURES, using MOVES (of
+     *  length CompactBoard.MAX_MOVES) as scratch space. */
+    static void features(CompactBoard b, long[] moves, int[] features) {
+        int n = b.generate(moves);
+        int jumps = 0, maxJump = 0;
+        if (n > 0 && CompactBoard.jumps(moves[0]) > 0) {
+            jumps = n - 1;
+            for (int i = 0; i < n; i += 1) {
+                maxJump =
+                    Math.max(maxJump, CompactBoard.jumps(moves[i]) - 1);
+            }
+        }
+        int sense = b.whoseMove() == WHITE ? 1 : -1;
+        features[PIECES] = Integer.bitCount(b.whiteMask())
+            - Integer.bitCount(b.blackMask());
+        features[JUMPS] = sense * jumps;
+        features[MAX_JUMP] = sense * maxJump;
+    }
+
+    /** Return a 64-bit hash of my weights as they are used in scoring
+     *  (that is, scaled and rounded), equal for all weights that score
+     *  all positions equally. */
+    long fingerprint() {
+        long result = FEATURES;
+        for (int i = 0; i < FEATURES; i += 1) {
+            result = result * FINGERPRINT_PRIME + _scaled[i];
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < FEATURES; i += 1) {
+            result.append(String.format("%s%s=%.4f", i == 0 ? "" : ",",
+                                        NAMES[i], _weights[i]));
+        }
+        return result.toString();
+    }
+
+    /** Multiplier combining weights in fingerprint() (the 64-bit FNV
+     *  prime). */
+    private static final long FINGERPRINT_PRIME = 0x100000001b3L;
+
+    /** The weights. */
+    private final double[] _weights;
+    /** The weights multiplied by SCALE and rounded. */
+    private final int[] _scaled;
+}
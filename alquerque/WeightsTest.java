@@ -0,0 +1,112 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import static qirkat.PieceColor.*;
+
+/** Tests of Weights.
+ *  @author Mudabbir Khan
+ */
+public class WeightsTest {
+
+    @Test
+    public void testSaveLoad() throws IOException {
+        Weights w = new Weights(new double[] { 1.25, -0.5, 0.015625 });
+        File file = File.createTempFile("qirkat", ".weights");
+        file.deleteOnExit();
+        w.save(file.getPath());
+        Weights v = Weights.load(file.getPath());
+        for (int i = 0; i < Weights.FEATURES; i += 1) {
+            assertEquals(w.get(i), v.get(i), 1e-6);
+        }
+        assertEquals(w.fingerprint(), v.fingerprint());
+        assertNotEquals(Weights.DEFAULT.fingerprint(), v.fingerprint());
+    }
+
+    @Test
+    public void testLoadPartial() throws IOException {
+        File file = File.createTempFile("qirkat", ".weights");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("# comment");
+            out.println("jumps 2.5");
+        }
+        Weights v = Weights.load(file.getPath());
+        assertEquals(1.0, v.get(Weights.PIECES), 0.0);
+        assertEquals(2.5, v.get(Weights.JUMPS), 0.0);
+        assertEquals(1.0, v.get(Weights.MAX_JUMP), 0.0);
+    }
+
+    @Test(expected = GameException.class)
+    public void testLoadUnknown() throws IOException {
+        File file = File.createTempFile("qirkat", ".weights");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("kings 3");
+        }
+        Weights.load(file.getPath());
+    }
+
+    /** Check that the features and the DEFAULT score of positions from
+     *  random games agree with the original static evaluation, computed
+     *  from the Board. */
+    @Test
+    public void testDefaultScore() {
+        Random r = new Random(17);
+        CompactBoard c = new CompactBoard();
+        long[] buf = new long[CompactBoard.MAX_MOVES];
+        int[] features = new int[Weights.FEATURES];
+        int jumpPositions = 0;
+        for (int game = 0; game < 20; game += 1) {
+            Board b = new Board();
+            while (!b.gameOver()) {
+                c.set(b);
+                int score = Weights.DEFAULT.score(c, buf, features);
+                assertEquals(Weights.SCALE * boardScore(b), score);
+                assertEquals(pieces(b), features[Weights.PIECES]);
+                if (features[Weights.JUMPS] != 0
+                    || features[Weights.MAX_JUMP] != 0) {
+                    jumpPositions += 1;
+                }
+                int n = c.generate(buf);
+                b.makeMove(CompactBoard.toMove(buf[r.nextInt(n)]));
+            }
+        }
+        assertTrue(jumpPositions > 0);
+    }
+
+    /** Return the number of white pieces less the number of black on
+     *  B. */
+    private static int pieces(Board b) {
+        int result = 0;
+        for (PieceColor p : b.getBoard()) {
+            result += p == WHITE ? 1 : p == BLACK ? -1 : 0;
+        }
+        return result;
+    }
+
+    /** Return the AI's original static evaluation of B. */
+    private static int boardScore(Board b) {
+        int jumps = 0, maxLength = 0;
+        boolean first = true;
+        for (Move mov : b.getMoves()) {
+            if (!first && mov.isJump()) {
+                jumps += 1;
+            }
+            first = false;
+            int size = 0;
+            for (Move m = mov.jumpTail(); m != null; m = m.jumpTail()) {
+                size += 1;
+            }
+            maxLength = Math.max(maxLength, size);
+        }
+        int sense = b.whoseMove() == WHITE ? 1 : -1;
+        return pieces(b) + sense * (jumps + maxLength);
+    }
+}
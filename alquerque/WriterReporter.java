@@ -0,0 +1,39 @@
+package qirkat;
+
+import java.io.PrintWriter;
+
+/** A Reporter that writes messages, one per line, to a PrintWriter,
+ *  such as one connected to a network client.
+ *  @author Mudabbir Khan
+ */
+class WriterReporter implements Reporter {
+
+    /** A Reporter writing to OUT. */
+    WriterReporter(PrintWriter out) {
+        _out = out;
+    }
+
+    @Override
+    public void errMsg(String format, Object... args) {
+        textMsg(String.format(format, args));
+    }
+
+    @Override
+    public void outcomeMsg(String format, Object... args) {
+        textMsg(String.format(format, args));
+    }
+
+    @Override
+    public void moveMsg(String format, Object... args) {
+        textMsg(String.format(format, args));
+    }
+
+    @Override
+    public void textMsg(String line) {
+        _out.println(line);
+        _out.flush();
+    }
+
+    /** Destination of messages. */
+    private final PrintWriter _out;
+}